@@ -0,0 +1,54 @@
+package com.mygame;
+
+import java.util.Arrays;
+
+import com.jme3.asset.AssetManager;
+
+import com.jme3.material.Material;
+
+import com.jme3.system.JmeSystem;
+import com.jme3.system.NativeLibraryLoader;
+
+/* The dice-group types, built once per benchmark fork
+ * the same way the application builds them,
+ * but without starting the application. */
+final class BenchmarkDice {
+	private static DiceGroupType[] diceGroupTypes = null;
+
+	private BenchmarkDice() {}
+
+	static synchronized DiceGroupType[] diceGroupTypes() {
+		if (diceGroupTypes == null) {
+			/* Normally done by JmeSystem when the application starts. */
+			NativeLibraryLoader.loadNativeLibrary("bulletjme", true);
+
+			final AssetManager assetManager = JmeSystem.newAssetManager(
+				Thread.currentThread()
+					.getContextClassLoader()
+					.getResource("com/jme3/asset/Desktop.cfg")
+			);
+			final Material dieMaterial = new Material(
+				assetManager,
+				"Common/MatDefs/Light/Lighting.j3md"
+			);
+			dieMaterial.setBoolean("UseMaterialColors", true);
+
+			diceGroupTypes =
+				Main.createDiceGroupTypes(assetManager, dieMaterial);
+		}
+
+		return diceGroupTypes;
+	}
+
+	static DiceGroupType diceGroupType(final String name) {
+		return Arrays.stream(diceGroupTypes())
+			.filter(type -> name.equals(type.name()))
+			.findFirst()
+			.orElseThrow();
+	}
+
+	/* The die type of a single-die dice-group type. */
+	static DieType dieType(final String name) {
+		return diceGroupType(name).dieTypes()[0];
+	}
+}
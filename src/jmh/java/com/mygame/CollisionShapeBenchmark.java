@@ -0,0 +1,87 @@
+package com.mygame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/* Physics steps per second with each collision-shape strategy,
+ * rolling 10 dice at a time until they settle
+ * (so the steps include the dice's collisions with each other).
+ * How fair each strategy rolls is measured by
+ * --shapes=NAME --calibrate, which prints a chi-squared statistic. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionShapeBenchmark {
+	private static final int DICE_GROUP_COUNT = 10;
+
+	@Param({ "D4", "D6", "D8", "D10", "D12", "D20" })
+	public String diceGroupTypeName;
+
+	@Param({ "MESH", "HULL" })
+	public CollisionShapeStrategy collisionShapeStrategy;
+
+	private DiceGroupType diceGroupType;
+	private HeadlessRoller roller;
+	private RollAggregator aggregator;
+	private long seed;
+
+	/* Reported by JMH next to the rolls per second. */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Counters {
+		public long steps;
+		public long cockedRerolls;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.steps = 0;
+			this.cockedRerolls = 0;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		this.diceGroupType =
+			BenchmarkDice.diceGroupType(this.diceGroupTypeName);
+		this.roller = new HeadlessRoller(this.collisionShapeStrategy);
+		this.aggregator = new RollAggregator();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.roller.destroy();
+	}
+
+	@Benchmark
+	public void roll(final Blackhole blackhole, final Counters counters) {
+		final float simulatedTime = this.roller.roll(
+			this.diceGroupType,
+			DICE_GROUP_COUNT,
+			this.seed++,
+			this.aggregator,
+			blackhole::consume
+		);
+
+		counters.steps += Math.round(simulatedTime / HeadlessRoller.TIME_STEP);
+		counters.cockedRerolls += this.roller.lastRerollCount();
+	}
+}
@@ -0,0 +1,77 @@
+package com.mygame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jme3.bullet.PhysicsSpace;
+
+/* A whole headless roll:
+ * roll N dice in the physics space, step until they have all settled
+ * and read them;
+ * and, to set against it, just the fresh physics space every roll gets
+ * (which depends on none of the parameters). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HeadlessRollBenchmark {
+	@Param({ "D6", "D20" })
+	public String diceGroupTypeName;
+
+	@Param({ "1", "10", "100" })
+	public int diceGroupCount;
+
+	@Param({ "MESH", "HULL" })
+	public CollisionShapeStrategy collisionShapeStrategy;
+
+	private DiceGroupType diceGroupType;
+	private HeadlessRoller roller;
+	private RollAggregator aggregator;
+	private long seed;
+
+	@Setup
+	public void setup() {
+		this.diceGroupType =
+			BenchmarkDice.diceGroupType(this.diceGroupTypeName);
+		this.roller = new HeadlessRoller(this.collisionShapeStrategy);
+		this.aggregator = new RollAggregator();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.roller.destroy();
+	}
+
+	@Benchmark
+	public float rollUntilSettled(final Blackhole blackhole) {
+		return this.roller.roll(
+			this.diceGroupType,
+			this.diceGroupCount,
+			this.seed++,
+			this.aggregator,
+			blackhole::consume
+		);
+	}
+
+	@Benchmark
+	public void createAndDestroySpace() {
+		final PhysicsSpace space = this.roller.createSpace();
+		this.roller.destroySpace(space);
+	}
+}
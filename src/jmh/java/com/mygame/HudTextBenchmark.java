@@ -0,0 +1,71 @@
+package com.mygame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Building the HUD text, as Main.updateHud does whenever it changes,
+ * for a given number of dice-group roll results. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HudTextBenchmark {
+	@Param({ "0", "10", "100", "2000" })
+	public int diceGroupCount;
+
+	private Main.HudState state;
+
+	@Setup
+	public void setup() {
+		final DiceGroupType d20 = BenchmarkDice.diceGroupType("D20");
+		final DieFace[] faces = d20.dieTypes()[0].faces();
+
+		final List<DiceGroupRollResult> results =
+			new ArrayList<>(this.diceGroupCount);
+		final RollAggregator aggregate = new RollAggregator();
+		for (int i = 0; i < this.diceGroupCount; ++i) {
+			final DieFace[] rolled = new DieFace[] { faces[i % faces.length] };
+			final DiceGroupRollResult result =
+				d20.rollResult(rolled, new int[1], FaceRoller.NONE);
+			results.add(result);
+			aggregate.add(d20.dieTypes(), rolled, result);
+		}
+
+		this.state = new Main.HudState(
+			Main.InputMode.OFF,
+			Main.InputErrorStatus.OK,
+			"",
+			d20,
+			this.diceGroupCount,
+			Main.DICE_GROUP_COUNT_MAX_INSTANCED,
+			true,
+			CollisionShapeStrategy.DEFAULT,
+			results,
+			aggregate,
+			0,
+			"",
+			""
+		);
+	}
+
+	@Benchmark
+	public String buildHudText() {
+		return Main.buildHudText(this.state);
+	}
+}
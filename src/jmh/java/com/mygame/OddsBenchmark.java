@@ -0,0 +1,62 @@
+package com.mygame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* The probability that diceGroupCount dice groups total at least their mean,
+ * computed from scratch (convolving, by FFT for large counts)
+ * and looked up in a warm cache. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OddsBenchmark {
+	@Param({ "D20", "D100", "4d6kh3+2", "10d10!>8" })
+	public String notation;
+
+	@Param({ "1", "10", "100", "1000" })
+	public int diceGroupCount;
+
+	private DiceGroupType diceGroupType;
+	private int total;
+	private Odds cachedOdds;
+
+	@Setup
+	public void setup() {
+		this.diceGroupType = DiceNotation.compile(
+			this.notation,
+			BenchmarkDice.diceGroupTypes()
+		);
+		this.cachedOdds = new Odds();
+		this.total = (int)Math.round(
+			this.cachedOdds
+				.distribution(this.diceGroupType, this.diceGroupCount)
+				.mean()
+		);
+	}
+
+	@Benchmark
+	public double compute() {
+		return new Odds()
+			.atLeast(this.diceGroupType, this.diceGroupCount, this.total);
+	}
+
+	@Benchmark
+	public double cached() {
+		return this.cachedOdds
+			.atLeast(this.diceGroupType, this.diceGroupCount, this.total);
+	}
+}
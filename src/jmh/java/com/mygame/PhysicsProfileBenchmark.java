@@ -0,0 +1,137 @@
+package com.mygame;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.PhysicsSpace;
+
+import com.jme3.bullet.objects.PhysicsRigidBody;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/* Frame time against die count for each physics profile and tray mode:
+ * the dice are rolled in a tray
+ * in a space set up as the profile and tray mode do
+ * and FRAME_COUNT frames (2 simulated seconds, while they tumble)
+ * are stepped as BulletAppState steps them,
+ * each next to a fixed amount of stand-in rendering work.
+ * With PARALLEL threading the step runs on another thread
+ * while the frame "renders", as in the window;
+ * otherwise it runs before it. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PhysicsProfileBenchmark {
+	private static final int FRAME_COUNT = 120;
+	private static final float FRAME_TIME = 1f / 60;
+	/* Blackhole.consumeCPU tokens per frame: about a millisecond. */
+	private static final long RENDER_TOKENS = 300_000;
+
+	@Param({ "STANDARD", "PERFORMANCE" })
+	public PhysicsProfile physicsProfile;
+
+	@Param({ "FULL", "COMPACT" })
+	public TrayMode trayMode;
+
+	@Param({ "1", "10", "100", "500" })
+	public int dieCount;
+
+	private DieType dieType;
+	private List<PhysicsRigidBody> trayBodies;
+	private ExecutorService physicsThread;
+	private long seed;
+
+	@Setup
+	public void setup() {
+		this.dieType = BenchmarkDice.dieType("D6");
+		this.trayBodies = HeadlessRoller.createDiceTray(this.trayMode);
+		this.physicsThread = Executors.newSingleThreadExecutor();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.physicsThread.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FRAME_COUNT)
+	public void stepFrames() throws InterruptedException, ExecutionException {
+		final PhysicsProfile profile = this.physicsProfile;
+		final boolean parallel = profile.threadingType()
+			== BulletAppState.ThreadingType.PARALLEL;
+
+		/* As in BulletAppState,
+		 * the space is created on the thread that steps it. */
+		final PhysicsSpace space = parallel
+			? this.physicsThread.submit(() -> this.createRolledSpace()).get()
+			: this.createRolledSpace();
+
+		final Runnable step =
+			() -> space.update(FRAME_TIME, profile.maxSubSteps());
+		for (int frame = 0; frame < FRAME_COUNT; ++frame) {
+			if (parallel) {
+				final Future<?> stepped = this.physicsThread.submit(step);
+				Blackhole.consumeCPU(RENDER_TOKENS);
+				stepped.get();
+			} else {
+				step.run();
+				Blackhole.consumeCPU(RENDER_TOKENS);
+			}
+		}
+
+		final Runnable destroy = () -> {
+			for (final PhysicsRigidBody body : space.getRigidBodyList()) {
+				space.removeCollisionObject(body);
+			}
+			space.destroy();
+		};
+		if (parallel) {
+			this.physicsThread.submit(destroy).get();
+		} else {
+			destroy.run();
+		}
+	}
+
+	private PhysicsSpace createRolledSpace() {
+		final PhysicsSpace space =
+			this.physicsProfile.createSpace(this.trayMode);
+		for (final PhysicsRigidBody trayBody : this.trayBodies) {
+			space.addCollisionObject(trayBody);
+		}
+
+		final SplittableRandom random = new SplittableRandom(this.seed++);
+		for (int i = 0; i < this.dieCount; ++i) {
+			final PhysicsRigidBody dieBody = new PhysicsRigidBody(
+				this.dieType.collisionShape(CollisionShapeStrategy.DEFAULT)
+			);
+			space.addCollisionObject(dieBody);
+			Main.rollDie(dieBody, random);
+		}
+
+		return space;
+	}
+}
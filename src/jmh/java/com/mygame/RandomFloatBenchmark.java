@@ -0,0 +1,44 @@
+package com.mygame;
+
+import java.util.SplittableRandom;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Main.fastRandomFloat and Main.fastRandomFloatClosed,
+ * which rollDie calls ten times per die,
+ * drawing from a per-roll SplittableRandom. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomFloatBenchmark {
+	private SplittableRandom random;
+
+	@Setup
+	public void setup() {
+		this.random = new SplittableRandom(0);
+	}
+
+	@Benchmark
+	public float fastRandomFloat() {
+		return Main.fastRandomFloat(this.random, -1, 1);
+	}
+
+	@Benchmark
+	public float fastRandomFloatClosed() {
+		return Main.fastRandomFloatClosed(this.random, -1, 1);
+	}
+}
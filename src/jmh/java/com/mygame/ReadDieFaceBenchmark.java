@@ -0,0 +1,95 @@
+package com.mygame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jme3.bullet.objects.PhysicsRigidBody;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+/* Main.readDieFace for every die type,
+ * on a set of bodies in random orientations
+ * (so that the best face is not always the first one tried),
+ * against comparing every face, as readDieFace used to. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReadDieFaceBenchmark {
+	private static final int BODY_COUNT = 1024;
+
+	@Param({ "D4", "D6", "D8", "D10", "D%", "D12", "D20" })
+	public String dieTypeName;
+
+	private DieType dieType;
+	private PhysicsRigidBody[] bodies;
+	private FaceReading reading;
+	private int next;
+
+	@Setup
+	public void setup() {
+		this.dieType = BenchmarkDice.dieType(this.dieTypeName);
+
+		this.bodies = new PhysicsRigidBody[BODY_COUNT];
+		for (int i = 0; i < BODY_COUNT; ++i) {
+			final PhysicsRigidBody body = new PhysicsRigidBody(
+				this.dieType.collisionShape(CollisionShapeStrategy.DEFAULT)
+			);
+			body.setPhysicsRotation(
+				new Quaternion().fromAngles(
+					FastMath.nextRandomFloat() * FastMath.TWO_PI,
+					FastMath.nextRandomFloat() * FastMath.TWO_PI,
+					FastMath.nextRandomFloat() * FastMath.PI
+				)
+			);
+			this.bodies[i] = body;
+		}
+		this.reading = new FaceReading();
+		this.next = 0;
+	}
+
+	@Benchmark
+	public DieFace readDieFace() {
+		final PhysicsRigidBody body = this.bodies[this.next];
+		this.next = (this.next + 1) % BODY_COUNT;
+
+		return Main.readDieFace(body, this.dieType, this.reading);
+	}
+
+	@Benchmark
+	public DieFace scanEveryFace() {
+		final PhysicsRigidBody body = this.bodies[this.next];
+		this.next = (this.next + 1) % BODY_COUNT;
+
+		final Quaternion rotation = body.getPhysicsRotation();
+		final Vector3f upFaceOriginalNormal =
+			rotation.inverse().mult(Vector3f.UNIT_Y);
+
+		DieFace bestFace = null;
+		float bestDot = Float.NEGATIVE_INFINITY;
+		for (final DieFace face : this.dieType.faces()) {
+			final float dot = upFaceOriginalNormal.dot(face.normal());
+			if (dot > bestDot) {
+				bestDot = dot;
+				bestFace = face;
+			}
+		}
+
+		return bestFace;
+	}
+}
@@ -0,0 +1,84 @@
+package com.mygame;
+
+import java.util.SplittableRandom;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Evaluating dice-group roll results from the dice's face values:
+ * a single-die type's, the D100's (which combines two dice)
+ * and those of compiled dice notation
+ * (keeping, exploding and advantage),
+ * both just the numeric value and the whole result. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RollResultBenchmark {
+	/* How many different rolls are cycled through. */
+	private static final int ROLL_COUNT = 1024;
+
+	@Param({ "D6", "D100", "4d6kh3+2", "10d10!>8", "3d20 adv" })
+	public String notation;
+
+	private DiceGroupType diceGroupType;
+	/* The face values of each roll, one roll after another. */
+	private int[] rolledValues;
+	/* The values evaluated (which evaluation overwrites). */
+	private int[] values;
+	private FaceRoller faceRoller;
+	private int nextRoll;
+
+	@Setup
+	public void setup() {
+		this.diceGroupType = DiceNotation.compile(
+			this.notation,
+			BenchmarkDice.diceGroupTypes()
+		);
+
+		final DieType[] dieTypes = this.diceGroupType.dieTypes();
+		final SplittableRandom random = new SplittableRandom(1);
+		this.rolledValues = new int[ROLL_COUNT * dieTypes.length];
+		for (int i = 0; i < this.rolledValues.length; ++i) {
+			final DieFace[] faces = dieTypes[i % dieTypes.length].faces();
+			this.rolledValues[i] =
+				faces[random.nextInt(faces.length)].numericValue();
+		}
+
+		this.values = new int[dieTypes.length];
+		this.faceRoller = FaceRoller.uniform(new SplittableRandom(2));
+		this.nextRoll = 0;
+	}
+
+	@Benchmark
+	public int evaluate() {
+		this.loadNextRoll();
+		return this.diceGroupType.evaluator()
+			.evaluate(this.values, 0, this.faceRoller);
+	}
+
+	@Benchmark
+	public DiceGroupRollResult rollResult() {
+		this.loadNextRoll();
+		return this.diceGroupType.rollResult(this.values, this.faceRoller);
+	}
+
+	private void loadNextRoll() {
+		final int n = this.values.length;
+		System.arraycopy(this.rolledValues, this.nextRoll * n, this.values, 0, n);
+		this.nextRoll = (this.nextRoll + 1) % ROLL_COUNT;
+	}
+}
@@ -0,0 +1,43 @@
+package com.mygame;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/* Counts the bytes of heap memory
+ * allocated by the current thread between start and stop,
+ * for checking that a hot path allocates nothing. */
+final class AllocationCounter {
+	private static final ThreadMXBean THREAD_MX_BEAN =
+		(ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	private long startBytes;
+	/* -1 until the first count, or if the JVM cannot count. */
+	private long lastCount;
+
+	AllocationCounter() {
+		this.lastCount = -1;
+	}
+
+	static boolean isSupported() {
+		return THREAD_MX_BEAN.isThreadAllocatedMemorySupported()
+			&& THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled();
+	}
+
+	void start() {
+		this.startBytes = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+	}
+
+	void stop() {
+		if (isSupported()) {
+			this.lastCount =
+				THREAD_MX_BEAN.getCurrentThreadAllocatedBytes()
+				- this.startBytes;
+		}
+	}
+
+	/* The bytes allocated between the latest start and stop. */
+	long lastCount() {
+		return this.lastCount;
+	}
+}
@@ -0,0 +1,28 @@
+package com.mygame;
+
+/* A calibration of the face distributions of all die types,
+ * as given on the command line:
+ * --calibrate [ROLLS [WORKERS]],
+ * where ROLLS is how many times to physically roll each die type
+ * and WORKERS is how many physics spaces to roll them in, in parallel.
+ * The measured face counts are written to FaceDistributions.DEFAULT_PATH. */
+record Calibration(int rollCount, int workerCount) {
+	static final String ARG = "--calibrate";
+
+	static Calibration parse(final String[] args) {
+		if (args.length < 1 || args.length > 3 || !args[0].equals(ARG)) {
+			throw new IllegalArgumentException(
+				String.format("usage: %s [ROLLS [WORKERS]]", ARG)
+			);
+		}
+
+		final int rollCount = args.length > 1
+			? HeadlessBatch.parsePositiveInt(args[1])
+			: 100_000;
+		final int workerCount = args.length > 2
+			? HeadlessBatch.parsePositiveInt(args[2])
+			: Runtime.getRuntime().availableProcessors();
+
+		return new Calibration(rollCount, workerCount);
+	}
+}
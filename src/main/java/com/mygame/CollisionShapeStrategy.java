@@ -0,0 +1,52 @@
+package com.mygame;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/* How the dice collide:
+ * MESH with the triangles of their models (Bullet's GImpact path,
+ * the slowest for dynamic bodies),
+ * HULL with a box for D6 and the convex hull of the model's vertices
+ * for the other die types (the dice are all convex,
+ * so the hulls are exact but for Bullet's collision margin).
+ * It can be chosen on the command line with
+ * --shapes=NAME (e.g., --shapes=mesh),
+ * before any mode argument. */
+enum CollisionShapeStrategy {
+	MESH,
+	HULL;
+
+	static final String ARG_PREFIX = "--shapes=";
+	static final CollisionShapeStrategy DEFAULT = HULL;
+
+	/* E.g., "hull". */
+	String displayName() {
+		return this.name().toLowerCase(Locale.ROOT);
+	}
+
+	CollisionShapeStrategy next() {
+		return switch (this) {
+			case MESH -> HULL;
+			case HULL -> MESH;
+		};
+	}
+
+	/* Parse "--shapes=NAME". */
+	static CollisionShapeStrategy parse(final String arg) {
+		if (!arg.startsWith(ARG_PREFIX)) {
+			throw new IllegalArgumentException(
+				String.format("not a %sNAME argument: %s", ARG_PREFIX, arg)
+			);
+		}
+
+		final String name = arg.substring(ARG_PREFIX.length());
+		return Arrays.stream(values())
+			.filter(strategy -> strategy.displayName().equals(name))
+			.findFirst()
+			.orElseThrow(
+				() -> new IllegalArgumentException(
+					String.format("invalid collision-shape strategy: %s", name)
+				)
+			);
+	}
+}
@@ -0,0 +1,15 @@
+package com.mygame;
+
+/* A dice group as rolled:
+ * the faces its dice came up on (before any rerolls or explosions),
+ * its roll result
+ * and the simulated time (in seconds) from the roll to its reading
+ * (0 if not simulated).
+ * Whatever all of that is needed for, such as the roll journal,
+ * it is handed to the roll's sink on a single thread;
+ * a roller may reuse the faces once the sink returns. */
+record DiceGroupRoll(
+	DieFace[] faces,
+	DiceGroupRollResult result,
+	float settleTime
+) {}
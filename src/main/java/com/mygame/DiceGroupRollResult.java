@@ -0,0 +1,6 @@
+package com.mygame;
+
+record DiceGroupRollResult(
+	String displayValue,
+	int numericValue
+) {}
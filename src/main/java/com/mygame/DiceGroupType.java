@@ -0,0 +1,70 @@
+package com.mygame;
+
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+record DiceGroupType(
+	String name,
+	DieType[] dieTypes,
+	/* Computes the numeric roll result from the dice's face values. */
+	RollEvaluator evaluator,
+	/* The display value of a numeric roll result. */
+	IntFunction<String> displayValueFn,
+	/* Computes the exact distribution of the numeric roll result,
+	 * with fair dice (see Odds, which caches it). */
+	Supplier<Distribution> distributionFn
+) {
+	/* The roll result of a dice group of this type
+	 * whose dice came up with the given face values
+	 * (which the evaluation may overwrite). */
+	DiceGroupRollResult rollResult(
+		final int[] values,
+		final FaceRoller faceRoller
+	) {
+		final int numericValue =
+			this.evaluator.evaluate(values, 0, faceRoller);
+		return new DiceGroupRollResult(
+			this.displayValueFn.apply(numericValue),
+			numericValue
+		);
+	}
+
+	/* The roll result of a dice group of this type
+	 * whose dice came up on faces,
+	 * with values (at least as long) as scratch space. */
+	DiceGroupRollResult rollResult(
+		final DieFace[] faces,
+		final int[] values,
+		final FaceRoller faceRoller
+	) {
+		for (int j = 0; j < faces.length; ++j) {
+			values[j] = faces[j].numericValue();
+		}
+
+		return this.rollResult(values, faceRoller);
+	}
+
+	/* A type of a single die,
+	 * its roll result being the face that came up. */
+	static DiceGroupType singleDie(final String name, final DieType dieType) {
+		final DieFace[] faces = dieType.faces();
+		final DieType[] dieTypes = { dieType };
+		final RollEvaluator evaluator =
+			(values, offset, faceRoller) -> values[offset];
+		return new DiceGroupType(
+			name,
+			dieTypes,
+			evaluator,
+			numericValue -> {
+				/* At most 20 faces. */
+				for (final DieFace face : faces) {
+					if (face.numericValue() == numericValue) {
+						return face.displayValue();
+					}
+				}
+				return Integer.toString(numericValue);
+			},
+			() -> Distribution.enumerate(dieTypes, evaluator)
+		);
+	}
+}
@@ -0,0 +1,688 @@
+package com.mygame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/* Compiles dice notation into dice-group types, e.g.:
+ *   d20        a D20 (the built-in D20 type itself)
+ *   4d6kh3+2   four D6s, keeping the highest three, plus 2
+ *   10d10!>8   ten D10s, each rolled again and added on 8 or more
+ *   3d20 adv   3d20 rolled twice, keeping the higher total
+ * A term is a number or a dice term:
+ * [count]d<sides> (sides being that of a built-in type,
+ * e.g. 4, 6, 8, 10, 12, 20, 100 or %),
+ * followed by any of the modifiers
+ *   r[c]       reroll a die while it matches c (by default, its minimum)
+ *   ro[c]      reroll a die once if it matches c
+ *   ![c]       roll a die again while it matches c (by default, its maximum),
+ *              adding each roll to it
+ *   khN, klN   keep the highest (or lowest) N dice (k is kh)
+ *   dhN, dlN   drop the highest (or lowest) N dice (d is dl)
+ * which apply in that order, whatever order they are written in.
+ * A match c is >N (N or more), <N (N or less) or [=]N.
+ * Terms are added or subtracted,
+ * and a trailing "adv" ("dis") rolls the whole thing twice,
+ * keeping the higher (lower) total.
+ * Case and whitespace are ignored.
+ *
+ * An exploding die's extra rolls are added to it
+ * (so keeping and dropping treat it as one die),
+ * and, like rerolls, are not simulated
+ * but drawn from the FaceRoller the dice group is evaluated with.
+ * The compiled evaluator works on the dice's face values in place,
+ * so evaluating a roll allocates nothing.
+ * The compiled type's exact distribution is built term by term:
+ * a die's from its built-in type's after rerolls and explosions,
+ * a term's by convolving its dice
+ * (or, when some are kept or dropped,
+ * by dynamic programming over how many dice come up on each total),
+ * and the terms' by convolving them. */
+final class DiceNotation {
+	/* Physical dice per dice group. */
+	static final int MAX_DICE = 100;
+	/* A die explodes or is rerolled at most this many times. */
+	private static final int MAX_ROLLS_AGAIN = 100;
+	private static final int MAX_NUMBER = 1_000_000;
+	/* Exploding dice's totals less likely than this
+	 * are left out of their distributions. */
+	private static final double TAIL_EPSILON = 1e-18;
+	/* Bounds the work of computing a kept total's distribution. */
+	private static final long MAX_KEEP_STATES = 10_000_000;
+
+	private final String notation;
+	/* The notation, lower-cased, without whitespace. */
+	private final String text;
+	private final DiceGroupType[] baseTypes;
+	private int pos;
+
+	private DiceNotation(
+		final String notation,
+		final DiceGroupType[] baseTypes
+	) {
+		this.notation = notation;
+		this.text =
+			notation.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+		this.baseTypes = baseTypes;
+		this.pos = 0;
+	}
+
+	/* Compile notation into a dice-group type
+	 * built from the given (built-in) dice-group types,
+	 * whose name is then the notation with its case and spacing normalized.
+	 * Notation that is just a built-in type's name, e.g. "D20" or "d%",
+	 * gives that type itself.
+	 * Throws IllegalArgumentException if notation is invalid. */
+	static DiceGroupType compile(
+		final String notation,
+		final DiceGroupType[] baseTypes
+	) {
+		for (final DiceGroupType baseType : baseTypes) {
+			if (baseType.name().equalsIgnoreCase(notation.strip())) {
+				return baseType;
+			}
+		}
+
+		return new DiceNotation(notation, baseTypes).compile();
+	}
+
+	private DiceGroupType compile() {
+		final List<Term> terms = new ArrayList<>();
+		int constant = 0;
+		boolean first = true;
+		while (first || this.peek('+') || this.peek('-')) {
+			final int sign = this.accept('-') ? -1 : 1;
+			if (sign > 0 && !this.accept('+') && !first) {
+				throw this.error("'+' or '-'");
+			}
+			first = false;
+
+			if (!this.peekDigit() && !this.peek('d')) {
+				throw this.error("a number or dice");
+			}
+			final int start = this.pos;
+			final int number = this.peekDigit() ? this.number() : 1;
+			if (this.accept('d')) {
+				terms.add(this.diceTerm(sign, number));
+			} else {
+				/* Bounded as a number is,
+				 * so that adding the dice to it cannot overflow either. */
+				try {
+					constant = Math.addExact(constant, sign * number);
+				} catch (ArithmeticException e) {
+					constant = Integer.MAX_VALUE;
+				}
+				if (Math.abs(constant) > MAX_NUMBER) {
+					throw this.errorAt(
+						start,
+						String.format(
+							"a constant total from %d to %d",
+							-MAX_NUMBER,
+							MAX_NUMBER
+						)
+					);
+				}
+			}
+		}
+
+		final boolean advantage = this.accept("adv");
+		final boolean disadvantage = !advantage && this.accept("dis");
+		if (this.pos < this.text.length()) {
+			throw this.error("'+', '-', \"adv\" or \"dis\"");
+		}
+		if (terms.isEmpty()) {
+			throw this.error("dice");
+		}
+
+		/* Just a built-in type. */
+		if (
+			terms.size() == 1
+			&& constant == 0
+			&& !advantage
+			&& !disadvantage
+			&& terms.get(0).isPlain()
+		) {
+			return terms.get(0).baseType();
+		}
+
+		final List<DieType> dieTypes = new ArrayList<>();
+		final RollEvaluator[] evaluators = new RollEvaluator[terms.size()];
+		final int[] offsets = new int[terms.size()];
+		final int[] signs = new int[terms.size()];
+		for (int t = 0; t < terms.size(); ++t) {
+			final Term term = terms.get(t);
+			evaluators[t] = term.evaluator();
+			offsets[t] = dieTypes.size();
+			signs[t] = term.sign();
+			for (int i = 0; i < term.count(); ++i) {
+				dieTypes.addAll(Arrays.asList(term.baseType().dieTypes()));
+			}
+		}
+
+		final int width = dieTypes.size();
+		if (width * (advantage || disadvantage ? 2 : 1) > MAX_DICE) {
+			throw this.tooManyDice();
+		}
+
+		final int total = constant;
+		final RollEvaluator sum = (values, offset, faceRoller) -> {
+			int result = total;
+			for (int t = 0; t < evaluators.length; ++t) {
+				result += signs[t] * evaluators[t].evaluate(
+					values,
+					offset + offsets[t],
+					faceRoller
+				);
+			}
+			return result;
+		};
+
+		final String sumText = this.text.substring(
+			0,
+			this.text.length() - (advantage || disadvantage ? 3 : 0)
+		);
+		if (advantage || disadvantage) {
+			dieTypes.addAll(List.copyOf(dieTypes));
+		}
+		return new DiceGroupType(
+			advantage ? sumText + " adv"
+				: disadvantage ? sumText + " dis"
+				: sumText,
+			dieTypes.toArray(DieType[]::new),
+			advantage
+				? (values, offset, faceRoller) -> Math.max(
+					sum.evaluate(values, offset, faceRoller),
+					sum.evaluate(values, offset + width, faceRoller)
+				)
+				: disadvantage
+				? (values, offset, faceRoller) -> Math.min(
+					sum.evaluate(values, offset, faceRoller),
+					sum.evaluate(values, offset + width, faceRoller)
+				)
+				: sum,
+			Integer::toString,
+			() -> {
+				Distribution distribution = Distribution.constant(total);
+				for (final Term term : terms) {
+					distribution = distribution.plus(term.distribution());
+				}
+
+				return advantage ? distribution.higherOf(distribution)
+					: disadvantage ? distribution.lowerOf(distribution)
+					: distribution;
+			}
+		);
+	}
+
+	/* Parse a dice term's sides and modifiers (after the 'd'). */
+	private Term diceTerm(final int sign, final int count) {
+		if (count < 1) {
+			throw this.error("a dice count of at least 1");
+		}
+
+		final String sides = this.accept('%')
+			? "%"
+			: Integer.toString(this.number());
+		final DiceGroupType baseType = Arrays.stream(this.baseTypes)
+			.filter(type -> type.name().equalsIgnoreCase("d" + sides))
+			.findFirst()
+			.orElseThrow(
+				() -> new IllegalArgumentException(
+					String.format("no d%s dice: %s", sides, this.notation)
+				)
+			);
+
+		if (count * baseType.dieTypes().length > MAX_DICE) {
+			throw this.tooManyDice();
+		}
+
+		final int[] possible = baseType.distributionFn().get().values();
+		final int min = possible[0], max = possible[possible.length - 1];
+
+		/* None by default: an empty range. */
+		int rerollMin = 1, rerollMax = 0, rerollLimit = 0;
+		int explodeMin = 1, explodeMax = 0;
+		/* The dice kept, counted from the lowest. */
+		int keepFrom = 0, keepTo = count;
+		boolean rerolls = false, explodes = false, keeps = false;
+		while (true) {
+			final int at = this.pos;
+			if (this.accept('r')) {
+				final boolean once = this.accept('o');
+				final int[] range = this.match(min);
+				rerollMin = range[0];
+				rerollMax = range[1];
+				rerollLimit = once ? 1 : MAX_ROLLS_AGAIN;
+				if (!once && covers(range, possible)) {
+					throw this.errorAt(at, "a reroll that can stop");
+				}
+				if (rerolls) {
+					throw this.errorAt(at, "one reroll");
+				}
+				rerolls = true;
+			} else if (this.accept('!')) {
+				final int[] range = this.match(max);
+				explodeMin = range[0];
+				explodeMax = range[1];
+				if (covers(range, possible)) {
+					throw this.errorAt(at, "an explosion that can stop");
+				}
+				if (explodes) {
+					throw this.errorAt(at, "one explosion");
+				}
+				explodes = true;
+			} else if (
+				this.peek('k')
+				|| this.peek('d') && !this.text.startsWith("dis", this.pos)
+			) {
+				final boolean keep = this.accept('k');
+				if (!keep) {
+					this.accept('d');
+				}
+				/* Keeping the highest and dropping the lowest by default. */
+				final boolean highest = this.accept('h')
+					|| !this.accept('l') && keep;
+				final int n = this.number();
+				if (keep ? n < 1 || n > count : n < 0 || n >= count) {
+					throw this.errorAt(
+						at,
+						keep
+							? String.format("keeping 1 to %d dice", count)
+							: String.format("dropping 0 to %d dice", count - 1)
+					);
+				}
+				final int kept = keep ? n : count - n;
+				final boolean keepHighest = keep == highest;
+				keepFrom = keepHighest ? count - kept : 0;
+				keepTo = keepHighest ? count : kept;
+				if (keeps) {
+					throw this.errorAt(at, "one keep or drop");
+				}
+				keeps = true;
+			} else {
+				break;
+			}
+		}
+
+		return new Term(
+			sign,
+			count,
+			baseType,
+			rerollMin,
+			rerollMax,
+			rerollLimit,
+			explodeMin,
+			explodeMax,
+			keepFrom,
+			keepTo
+		);
+	}
+
+	/* Parse an optional match ([>|<|=]N), defaulting to exactly dflt,
+	 * into the inclusive range of values it matches. */
+	private int[] match(final int dflt) {
+		if (this.accept('>')) {
+			return new int[] { this.number(), Integer.MAX_VALUE };
+		}
+		if (this.accept('<')) {
+			return new int[] { Integer.MIN_VALUE, this.number() };
+		}
+		if (this.accept('=') || this.peekDigit()) {
+			final int n = this.number();
+			return new int[] { n, n };
+		}
+		return new int[] { dflt, dflt };
+	}
+
+	private int number() {
+		final int start = this.pos;
+		int n = 0;
+		while (this.peekDigit()) {
+			final int digit = this.text.charAt(this.pos++) - '0';
+			try {
+				n = Math.addExact(Math.multiplyExact(n, 10), digit);
+			} catch (ArithmeticException e) {
+				n = Integer.MAX_VALUE;
+			}
+			if (n > MAX_NUMBER) {
+				throw this.errorAt(start, "a number up to " + MAX_NUMBER);
+			}
+		}
+		if (this.pos == start) {
+			throw this.error("a number");
+		}
+
+		return n;
+	}
+
+	private boolean peek(final char c) {
+		return this.pos < this.text.length()
+			&& this.text.charAt(this.pos) == c;
+	}
+
+	/* Only ASCII digits: Character.isDigit would also take,
+	 * e.g., Arabic-Indic ones, which number() cannot read. */
+	private boolean peekDigit() {
+		if (this.pos >= this.text.length()) {
+			return false;
+		}
+		final char c = this.text.charAt(this.pos);
+		return c >= '0' && c <= '9';
+	}
+
+	private boolean accept(final char c) {
+		if (!this.peek(c)) {
+			return false;
+		}
+		++this.pos;
+		return true;
+	}
+
+	private boolean accept(final String s) {
+		if (!this.text.startsWith(s, this.pos)) {
+			return false;
+		}
+		this.pos += s.length();
+		return true;
+	}
+
+	private IllegalArgumentException error(final String expected) {
+		return this.errorAt(this.pos, expected);
+	}
+
+	private IllegalArgumentException errorAt(
+		final int at,
+		final String expected
+	) {
+		return new IllegalArgumentException(
+			String.format(
+				"invalid dice notation (expected %s at \"%s\"): %s",
+				expected,
+				this.text.substring(at),
+				this.notation
+			)
+		);
+	}
+
+	private IllegalArgumentException tooManyDice() {
+		return new IllegalArgumentException(
+			String.format("too many dice (over %d): %s", MAX_DICE, this.notation)
+		);
+	}
+
+	/* Whether range matches every one of the possible values. */
+	private static boolean covers(final int[] range, final int[] possible) {
+		return Arrays.stream(possible)
+			.allMatch(value -> value >= range[0] && value <= range[1]);
+	}
+
+	/* count dice of baseType:
+	 * each rerolled while in [rerollMin, rerollMax], up to rerollLimit times,
+	 * then rolled again and added while in [explodeMin, explodeMax];
+	 * then the total of those from keepFrom to keepTo,
+	 * counting from the lowest. */
+	private static RollEvaluator diceEvaluator(
+		final DiceGroupType baseType,
+		final int count,
+		final int rerollMin,
+		final int rerollMax,
+		final int rerollLimit,
+		final int explodeMin,
+		final int explodeMax,
+		final int keepFrom,
+		final int keepTo
+	) {
+		final RollEvaluator base = baseType.evaluator();
+		final DieType[] dieTypes = baseType.dieTypes();
+		final int width = dieTypes.length;
+
+		return (values, offset, faceRoller) -> {
+			/* Die i's result goes to values[offset + i],
+			 * which only ever overwrites the values of dice already done. */
+			for (int i = 0; i < count; ++i) {
+				final int at = offset + i * width;
+				int value = base.evaluate(values, at, faceRoller);
+				int rerollCount = 0;
+				while (
+					rerollCount++ < rerollLimit
+					&& value >= rerollMin
+					&& value <= rerollMax
+				) {
+					value = rollAgain(base, dieTypes, values, at, faceRoller);
+				}
+
+				int total = value;
+				int explosionCount = 0;
+				while (
+					explosionCount++ < MAX_ROLLS_AGAIN
+					&& value >= explodeMin
+					&& value <= explodeMax
+				) {
+					value = rollAgain(base, dieTypes, values, at, faceRoller);
+					total += value;
+				}
+
+				values[offset + i] = total;
+			}
+
+			if (keepTo - keepFrom < count) {
+				Arrays.sort(values, offset, offset + count);
+			}
+			int sum = 0;
+			for (int i = keepFrom; i < keepTo; ++i) {
+				sum += values[offset + i];
+			}
+			return sum;
+		};
+	}
+
+	/* Roll a die of a built-in type again,
+	 * overwriting its face values at values[at] onwards. */
+	private static int rollAgain(
+		final RollEvaluator base,
+		final DieType[] dieTypes,
+		final int[] values,
+		final int at,
+		final FaceRoller faceRoller
+	) {
+		for (int j = 0; j < dieTypes.length; ++j) {
+			values[at + j] = faceRoller.roll(dieTypes[j]);
+		}
+
+		return base.evaluate(values, at, faceRoller);
+	}
+
+	private static record Term(
+		int sign,
+		int count,
+		DiceGroupType baseType,
+		/* Empty ranges (min > max) for no rerolls or explosions. */
+		int rerollMin,
+		int rerollMax,
+		int rerollLimit,
+		int explodeMin,
+		int explodeMax,
+		/* The dice kept, counted from the lowest. */
+		int keepFrom,
+		int keepTo
+	) {
+		/* A single unmodified die. */
+		boolean isPlain() {
+			return this.sign > 0
+				&& this.count == 1
+				&& this.rerollMin > this.rerollMax
+				&& this.explodeMin > this.explodeMax;
+		}
+
+		RollEvaluator evaluator() {
+			return diceEvaluator(
+				this.baseType,
+				this.count,
+				this.rerollMin,
+				this.rerollMax,
+				this.rerollLimit,
+				this.explodeMin,
+				this.explodeMax,
+				this.keepFrom,
+				this.keepTo
+			);
+		}
+
+		/* The exact distribution of the term (with its sign). */
+		Distribution distribution() {
+			final double[] die = this.dieWeights();
+			final Distribution total = this.keepTo - this.keepFrom < this.count
+				? Distribution.of(0, this.keptWeights(die))
+				: Distribution.of(0, die).times(this.count);
+
+			return this.sign < 0 ? total.negated() : total;
+		}
+
+		/* The probability of each total of a single die,
+		 * after its rerolls and explosions, indexed by the total
+		 * (the built-in dice's values all being positive). */
+		private double[] dieWeights() {
+			final Distribution base = this.baseType.distributionFn().get();
+			final double[] baseWeights = new double[base.max() + 1];
+			double rerollProbability = 0;
+			for (int v = base.min(); v <= base.max(); ++v) {
+				baseWeights[v] = base.probability(v);
+				if (v >= this.rerollMin && v <= this.rerollMax) {
+					rerollProbability += baseWeights[v];
+				}
+			}
+
+			/* A value that is not rerolled stands
+			 * if it came up on any of the first rerollLimit rolls,
+			 * and any value stands after rerollLimit rerolls. */
+			double standingWeight = 0, lastRollProbability = 1;
+			for (int i = 0; i < this.rerollLimit; ++i) {
+				standingWeight += lastRollProbability;
+				lastRollProbability *= rerollProbability;
+			}
+			final double[] rolled = new double[baseWeights.length];
+			for (int v = 0; v < rolled.length; ++v) {
+				final boolean rerolled =
+					v >= this.rerollMin && v <= this.rerollMax;
+				rolled[v] = baseWeights[v]
+					* ((rerolled ? 0 : standingWeight) + lastRollProbability);
+			}
+			if (this.explodeMin > this.explodeMax) {
+				return rolled;
+			}
+
+			/* The total of the rolls again after an explosion,
+			 * with up to MAX_ROLLS_AGAIN of them:
+			 * with one, just a roll;
+			 * with c, a roll, plus (if it explodes) the total with c - 1. */
+			final double[] stops = this.split(baseWeights, false);
+			final double[] explodes = this.split(baseWeights, true);
+			double[] again = baseWeights;
+			for (int c = 2; c <= MAX_ROLLS_AGAIN; ++c) {
+				again = trimTail(add(stops, Distribution.convolve(explodes, again)));
+			}
+
+			return trimTail(
+				add(
+					this.split(rolled, false),
+					Distribution.convolve(this.split(rolled, true), again)
+				)
+			);
+		}
+
+		/* The weights of the values that explode (or that do not). */
+		private double[] split(final double[] weights, final boolean explode) {
+			final double[] split = new double[weights.length];
+			for (int v = 0; v < weights.length; ++v) {
+				if ((v >= this.explodeMin && v <= this.explodeMax) == explode) {
+					split[v] = weights[v];
+				}
+			}
+			return split;
+		}
+
+		/* The probability of each total of the kept dice,
+		 * indexed by the total,
+		 * given that of each total of a single die.
+		 * Going through the die's totals from the kept end,
+		 * f[j][s] is the probability that j dice have come up
+		 * on the totals so far,
+		 * with the kept ones among them adding up to s;
+		 * c more dice coming up on the next total v
+		 * (C(count - j, c) p(v)^c) keeps as many of them as still fit. */
+		private double[] keptWeights(final double[] die) {
+			final int count = this.count;
+			final int kept = this.keepTo - this.keepFrom;
+			final boolean highest = this.keepTo == count;
+			final int sumMax = kept * (die.length - 1);
+			if ((long)(count + 1) * (sumMax + 1) > MAX_KEEP_STATES) {
+				throw new IllegalArgumentException(
+					"too many dice to keep or drop exactly"
+				);
+			}
+
+			final double[][] binomials = new double[count + 1][];
+			for (int n = 0; n <= count; ++n) {
+				binomials[n] = new double[n + 1];
+				binomials[n][0] = binomials[n][n] = 1;
+				for (int k = 1; k < n; ++k) {
+					binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+				}
+			}
+
+			double[][] f = new double[count + 1][sumMax + 1];
+			f[0][0] = 1;
+			for (int i = 0; i < die.length; ++i) {
+				final int v = highest ? die.length - 1 - i : i;
+				final double p = die[v];
+				if (p <= 0) {
+					continue;
+				}
+
+				final double[][] g = new double[count + 1][sumMax + 1];
+				for (int j = 0; j <= count; ++j) {
+					final int keptSoFar = Math.min(j, kept);
+					for (int s = 0; s <= sumMax; ++s) {
+						final double w = f[j][s];
+						if (w == 0) {
+							continue;
+						}
+
+						double pc = 1;
+						for (int c = 0; c <= count - j; ++c) {
+							final int keptNow = Math.min(c, kept - keptSoFar);
+							g[j + c][s + keptNow * v] +=
+								w * binomials[count - j][c] * pc;
+							pc *= p;
+						}
+					}
+				}
+				f = g;
+			}
+
+			return f[count];
+		}
+
+		private static double[] add(final double[] a, final double[] b) {
+			final double[] sum = new double[Math.max(a.length, b.length)];
+			for (int i = 0; i < a.length; ++i) {
+				sum[i] += a[i];
+			}
+			for (int i = 0; i < b.length; ++i) {
+				sum[i] += b[i];
+			}
+			return sum;
+		}
+
+		/* Drop the totals (of ever more explosions)
+		 * too unlikely to matter. */
+		private static double[] trimTail(final double[] weights) {
+			int length = weights.length;
+			while (length > 1 && weights[length - 1] < TAIL_EPSILON) {
+				--length;
+			}
+			return Arrays.copyOf(weights, length);
+		}
+	}
+}
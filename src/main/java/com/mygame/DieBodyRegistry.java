@@ -0,0 +1,39 @@
+package com.mygame;
+
+import java.util.Arrays;
+
+import com.jme3.bullet.objects.PhysicsRigidBody;
+
+/* The bodies of the dice currently being rolled,
+ * in a flat array indexed in the order in which they were added,
+ * so that the dice of a dice group are consecutive.
+ * Iterating over it (with size and get) allocates nothing. */
+final class DieBodyRegistry {
+	private PhysicsRigidBody[] bodies;
+	private int size;
+
+	DieBodyRegistry() {
+		final int initialCapacity = 16;
+		this.bodies = new PhysicsRigidBody[initialCapacity];
+	}
+
+	void add(final PhysicsRigidBody body) {
+		if (this.size == this.bodies.length) {
+			this.bodies = Arrays.copyOf(this.bodies, 2 * this.size);
+		}
+		this.bodies[this.size++] = body;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	PhysicsRigidBody get(final int i) {
+		return this.bodies[i];
+	}
+
+	void clear() {
+		Arrays.fill(this.bodies, 0, this.size, null);
+		this.size = 0;
+	}
+}
@@ -0,0 +1,13 @@
+package com.mygame;
+
+import com.jme3.math.Vector3f;
+
+record DieFace(
+	/* The value on the face. */
+	String displayValue,
+	/* The numeric value of the face,
+	 * used for computing the total roll result. */
+	int numericValue,
+	/* The face's outward unit normal. */
+	Vector3f normal
+) {}
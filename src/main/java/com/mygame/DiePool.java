@@ -0,0 +1,53 @@
+package com.mygame;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/* Recycles dice between rolls, per die type,
+ * so that rolling does not clone a prototype
+ * and allocate a native rigid body for every die.
+ * The window pools its dice as Spatials:
+ * a pooled die is detached from the scene graph,
+ * and its RigidBodyControl (still attached to it)
+ * is out of the physics space.
+ * A HeadlessRoller pools bare PhysicsRigidBodies,
+ * out of any physics space.
+ * Whoever acquires a die resets and re-adds it. */
+final class DiePool<T> {
+	private final Map<DieType, ArrayDeque<T>> freeDice;
+	private long hitCount;
+	private long missCount;
+
+	DiePool() {
+		this.freeDice = new IdentityHashMap<>();
+	}
+
+	/* Return a pooled die of the given type,
+	 * or null if there is none (and a new one must be created). */
+	T acquire(final DieType dieType) {
+		final ArrayDeque<T> dice = this.freeDice.get(dieType);
+		final T die = dice != null ? dice.poll() : null;
+		if (die != null) {
+			++this.hitCount;
+		} else {
+			++this.missCount;
+		}
+
+		return die;
+	}
+
+	void release(final DieType dieType, final T die) {
+		this.freeDice
+			.computeIfAbsent(dieType, type -> new ArrayDeque<>())
+			.add(die);
+	}
+
+	long hitCount() {
+		return this.hitCount;
+	}
+
+	long missCount() {
+		return this.missCount;
+	}
+}
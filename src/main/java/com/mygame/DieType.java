@@ -0,0 +1,24 @@
+package com.mygame;
+
+import java.util.Map;
+
+import com.jme3.bullet.collision.shapes.CollisionShape;
+
+import com.jme3.scene.Spatial;
+
+record DieType(
+	String name,
+	Spatial prototype,
+	/* A collision shape for each strategy. */
+	Map<CollisionShapeStrategy, CollisionShape> collisionShapes,
+	DieFace[] faces,
+	/* Finds which of the faces is up. */
+	FaceLookup faceLookup,
+	/* A die read with a confidence below this has settled cocked
+	 * (leaning on a wall or on another die) and is rolled again. */
+	float cockedConfidence
+) {
+	CollisionShape collisionShape(final CollisionShapeStrategy strategy) {
+		return this.collisionShapes.get(strategy);
+	}
+}
@@ -0,0 +1,328 @@
+package com.mygame;
+
+import java.util.Arrays;
+
+import java.util.stream.IntStream;
+
+/* The exact probability distribution of a (numeric) roll result:
+ * the probability of each integer from min() to max().
+ * Distributions are immutable, so they can be cached and shared.
+ *
+ * Sums of independent results are convolutions of their distributions:
+ * directly for small supports,
+ * and by FFT (in O(n log n) rather than O(n^2)) for large ones,
+ * so that, say, the distribution of 100 D20s added up
+ * takes a handful of FFTs of a few thousand points.
+ * The FFT is exact up to rounding
+ * (about 1e-15 of the largest probability),
+ * so probabilities far out in the tails of large sums
+ * are only that accurate. */
+final class Distribution {
+	/* Supports this small (on either side) are convolved directly. */
+	private static final int DIRECT_CONVOLUTION_MAX = 64;
+	/* The most possible values a sum may have
+	 * (its FFT then takes four arrays of up to this many doubles). */
+	static final int MAX_SUPPORT = 1 << 22;
+
+	private final int min;
+	/* probabilities[i] is the probability of min + i. */
+	private final double[] probabilities;
+	/* tails[i] is the probability of min + i or more,
+	 * summed from the top so that small tails keep their precision. */
+	private final double[] tails;
+
+	private Distribution(final int min, final double[] probabilities) {
+		/* Trim away impossible values at either end. */
+		int from = 0, to = probabilities.length;
+		while (from < to - 1 && probabilities[from] <= 0) {
+			++from;
+		}
+		while (to > from + 1 && probabilities[to - 1] <= 0) {
+			--to;
+		}
+
+		this.min = min + from;
+		this.probabilities = Arrays.copyOfRange(probabilities, from, to);
+		this.tails = new double[this.probabilities.length];
+		double tail = 0;
+		for (int i = this.probabilities.length - 1; i >= 0; --i) {
+			/* Rounding in the FFT can leave tiny negative values. */
+			this.probabilities[i] = Math.max(this.probabilities[i], 0);
+			tail += this.probabilities[i];
+			this.tails[i] = tail;
+		}
+	}
+
+	/* The distribution with the given probabilities
+	 * of min, min + 1 and so on. */
+	static Distribution of(final int min, final double[] probabilities) {
+		if (probabilities.length == 0) {
+			throw new IllegalArgumentException("no probabilities");
+		}
+
+		return new Distribution(min, probabilities.clone());
+	}
+
+	static Distribution constant(final int value) {
+		return new Distribution(value, new double[] { 1 });
+	}
+
+	/* The distribution of the roll result of dice of the given types,
+	 * with every combination of their faces equally likely,
+	 * trying every combination
+	 * (so only for a few dice, and evaluators that roll no dice again). */
+	static Distribution enumerate(
+		final DieType[] dieTypes,
+		final RollEvaluator evaluator
+	) {
+		int combinationCount = 1;
+		for (final DieType dieType : dieTypes) {
+			combinationCount *= dieType.faces().length;
+		}
+
+		final int[] results = new int[combinationCount];
+		final int[] faceIdxs = new int[dieTypes.length];
+		final int[] values = new int[dieTypes.length];
+		for (int c = 0; c < combinationCount; ++c) {
+			for (int j = 0; j < dieTypes.length; ++j) {
+				values[j] = dieTypes[j].faces()[faceIdxs[j]].numericValue();
+			}
+			results[c] = evaluator.evaluate(values, 0, FaceRoller.NONE);
+
+			/* Count through the combinations like an odometer. */
+			for (int j = 0; j < dieTypes.length; ++j) {
+				if (++faceIdxs[j] < dieTypes[j].faces().length) {
+					break;
+				}
+				faceIdxs[j] = 0;
+			}
+		}
+
+		final int min = Arrays.stream(results).min().orElseThrow();
+		final int max = Arrays.stream(results).max().orElseThrow();
+		final double[] probabilities = new double[max - min + 1];
+		for (final int result : results) {
+			probabilities[result - min] += 1.0 / combinationCount;
+		}
+
+		return new Distribution(min, probabilities);
+	}
+
+	int min() {
+		return this.min;
+	}
+
+	int max() {
+		return this.min + this.probabilities.length - 1;
+	}
+
+	/* The probability of exactly x. */
+	double probability(final int x) {
+		final long i = (long)x - this.min;
+		return i >= 0 && i < this.probabilities.length
+			? this.probabilities[(int)i]
+			: 0;
+	}
+
+	/* The probability of x or more. */
+	double atLeast(final int x) {
+		final long i = (long)x - this.min;
+		if (i <= 0) {
+			return 1;
+		}
+		return i < this.tails.length ? this.tails[(int)i] : 0;
+	}
+
+	/* The probability of x or less. */
+	double atMost(final int x) {
+		return x == Integer.MAX_VALUE ? 1 : 1 - this.atLeast(x + 1);
+	}
+
+	/* The values with a nonzero probability, in ascending order. */
+	int[] values() {
+		return IntStream.range(0, this.probabilities.length)
+			.filter(i -> this.probabilities[i] > 0)
+			.map(i -> this.min + i)
+			.toArray();
+	}
+
+	double mean() {
+		double mean = 0;
+		for (int i = 0; i < this.probabilities.length; ++i) {
+			mean += (double)(this.min + i) * this.probabilities[i];
+		}
+		return mean;
+	}
+
+	double standardDeviation() {
+		final double mean = this.mean();
+		double variance = 0;
+		for (int i = 0; i < this.probabilities.length; ++i) {
+			final double d = this.min + i - mean;
+			variance += d * d * this.probabilities[i];
+		}
+		return Math.sqrt(variance);
+	}
+
+	/* The distribution of this result plus an independent other one. */
+	Distribution plus(final Distribution other) {
+		checkSupport(
+			(long)this.probabilities.length + other.probabilities.length - 1
+		);
+		return new Distribution(
+			this.min + other.min,
+			convolve(this.probabilities, other.probabilities)
+		);
+	}
+
+	/* The distribution of the sum of n independent results like this one,
+	 * by repeated squaring (so in about log2(n) convolutions). */
+	Distribution times(final int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("invalid count");
+		}
+		checkSupport((long)(this.probabilities.length - 1) * n + 1);
+
+		Distribution result = null;
+		Distribution power = this;
+		for (int k = n; k > 0; k >>= 1) {
+			if ((k & 1) != 0) {
+				result = result == null ? power : result.plus(power);
+			}
+			if (k > 1) {
+				power = power.plus(power);
+			}
+		}
+		return result;
+	}
+
+	private static void checkSupport(final long support) {
+		if (support > MAX_SUPPORT) {
+			throw new IllegalArgumentException(
+				String.format(
+					"too many possible totals: %d (at most %d)",
+					support,
+					MAX_SUPPORT
+				)
+			);
+		}
+	}
+
+	Distribution negated() {
+		final int n = this.probabilities.length;
+		final double[] probabilities = new double[n];
+		for (int i = 0; i < n; ++i) {
+			probabilities[i] = this.probabilities[n - 1 - i];
+		}
+		return new Distribution(-this.max(), probabilities);
+	}
+
+	Distribution shifted(final int offset) {
+		return new Distribution(this.min + offset, this.probabilities.clone());
+	}
+
+	/* The distribution of the higher of this result
+	 * and an independent other one:
+	 * P(max <= x) = P(this <= x) P(other <= x). */
+	Distribution higherOf(final Distribution other) {
+		final int min = Math.max(this.min, other.min);
+		final int max = Math.max(this.max(), other.max());
+		final double[] probabilities = new double[max - min + 1];
+		double below = this.atMost(min - 1) * other.atMost(min - 1);
+		for (int x = min; x <= max; ++x) {
+			final double atMost = this.atMost(x) * other.atMost(x);
+			probabilities[x - min] = atMost - below;
+			below = atMost;
+		}
+		return new Distribution(min, probabilities);
+	}
+
+	/* The distribution of the lower of this result
+	 * and an independent other one:
+	 * P(min >= x) = P(this >= x) P(other >= x). */
+	Distribution lowerOf(final Distribution other) {
+		return this.negated().higherOf(other.negated()).negated();
+	}
+
+	/* The convolution of two sequences of weights
+	 * (which need not add up to 1). */
+	static double[] convolve(final double[] a, final double[] b) {
+		if (Math.min(a.length, b.length) <= DIRECT_CONVOLUTION_MAX) {
+			final double[] c = new double[a.length + b.length - 1];
+			for (int i = 0; i < a.length; ++i) {
+				if (a[i] == 0) {
+					continue;
+				}
+				for (int j = 0; j < b.length; ++j) {
+					c[i + j] += a[i] * b[j];
+				}
+			}
+			return c;
+		}
+
+		final int length = a.length + b.length - 1;
+		final int n = Integer.highestOneBit(length - 1) << 1;
+		final double[] aRe = Arrays.copyOf(a, n), aIm = new double[n];
+		final double[] bRe = Arrays.copyOf(b, n), bIm = new double[n];
+		fft(aRe, aIm, false);
+		fft(bRe, bIm, false);
+		for (int i = 0; i < n; ++i) {
+			final double re = aRe[i] * bRe[i] - aIm[i] * bIm[i];
+			final double im = aRe[i] * bIm[i] + aIm[i] * bRe[i];
+			aRe[i] = re;
+			aIm[i] = im;
+		}
+		fft(aRe, aIm, true);
+
+		final double[] c = new double[length];
+		for (int i = 0; i < length; ++i) {
+			c[i] = aRe[i] / n;
+		}
+		return c;
+	}
+
+	/* In-place iterative radix-2 FFT of re + i im
+	 * (whose length is a power of 2);
+	 * inverse leaves the result unscaled (n times too large). */
+	private static void fft(
+		final double[] re,
+		final double[] im,
+		final boolean inverse
+	) {
+		final int n = re.length;
+
+		/* Bit-reversal permutation. */
+		for (int i = 1, j = 0; i < n; ++i) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				final double tRe = re[i], tIm = im[i];
+				re[i] = re[j];
+				im[i] = im[j];
+				re[j] = tRe;
+				im[j] = tIm;
+			}
+		}
+
+		for (int len = 2; len <= n; len <<= 1) {
+			final double angle = (inverse ? 2 : -2) * Math.PI / len;
+			final int half = len >> 1;
+			for (int k = 0; k < half; ++k) {
+				final double wRe = Math.cos(angle * k);
+				final double wIm = Math.sin(angle * k);
+				for (int i = k; i < n; i += len) {
+					final int j = i + half;
+					final double tRe = re[j] * wRe - im[j] * wIm;
+					final double tIm = re[j] * wIm + im[j] * wRe;
+					re[j] = re[i] - tRe;
+					im[j] = im[i] - tIm;
+					re[i] += tRe;
+					im[i] += tIm;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.mygame;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import java.util.random.RandomGenerator;
+
+/* How often each face of a die type lands up,
+ * as counted from rolls (or assumed uniform),
+ * sampled in constant time by Vose's alias method. */
+final class FaceDistribution {
+	/* Per face index (into DieType.faces). */
+	private final long[] counts;
+	private final double[] probabilities;
+	private final int[] aliases;
+
+	FaceDistribution(final long[] counts) {
+		final long total = Arrays.stream(counts).sum();
+		if (counts.length == 0 || total <= 0) {
+			throw new IllegalArgumentException("invalid face counts");
+		}
+
+		this.counts = counts.clone();
+
+		final int n = counts.length;
+		this.probabilities = new double[n];
+		this.aliases = new int[n];
+
+		/* Scale the probabilities such that their mean is 1,
+		 * and pair each face less likely than average
+		 * with one more likely than average. */
+		final double[] scaled = new double[n];
+		final Deque<Integer> small = new ArrayDeque<>();
+		final Deque<Integer> large = new ArrayDeque<>();
+		for (int i = 0; i < n; ++i) {
+			scaled[i] = (double)counts[i] * n / total;
+			(scaled[i] < 1 ? small : large).push(i);
+		}
+
+		while (!small.isEmpty() && !large.isEmpty()) {
+			final int s = small.pop(), l = large.pop();
+			this.probabilities[s] = scaled[s];
+			this.aliases[s] = l;
+
+			scaled[l] = scaled[l] + scaled[s] - 1;
+			(scaled[l] < 1 ? small : large).push(l);
+		}
+		/* Whatever is left has probability 1, up to rounding. */
+		for (final int i : large) {
+			this.probabilities[i] = 1;
+		}
+		for (final int i : small) {
+			this.probabilities[i] = 1;
+		}
+	}
+
+	static FaceDistribution uniform(final int nFace) {
+		final long[] counts = new long[nFace];
+		Arrays.fill(counts, 1);
+		return new FaceDistribution(counts);
+	}
+
+	int faceCount() {
+		return this.counts.length;
+	}
+
+	long[] counts() {
+		return this.counts.clone();
+	}
+
+	/* The index of a face chosen at random with this distribution. */
+	int sample(final RandomGenerator rng) {
+		final int i = rng.nextInt(this.counts.length);
+		return rng.nextDouble() < this.probabilities[i] ? i : this.aliases[i];
+	}
+}
@@ -0,0 +1,72 @@
+package com.mygame;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import java.util.stream.Collectors;
+
+/* Reading and writing the face distributions of the die types,
+ * as measured by calibration,
+ * in a properties file mapping each die-type name
+ * to its comma-separated face counts. */
+final class FaceDistributions {
+	static final Path DEFAULT_PATH = Path.of("face-distributions.properties");
+
+	private FaceDistributions() {}
+
+	/* Return the distributions in the file, by die-type name,
+	 * or none if there is no such file. */
+	static Map<String, FaceDistribution> load(final Path path)
+		throws IOException
+	{
+		final Map<String, FaceDistribution> distributions = new HashMap<>();
+		if (!Files.exists(path)) {
+			return distributions;
+		}
+
+		final Properties props = new Properties();
+		try (final Reader in = Files.newBufferedReader(path)) {
+			props.load(in);
+		}
+
+		for (final String dieTypeName : props.stringPropertyNames()) {
+			final long[] counts = Arrays.stream(
+				props.getProperty(dieTypeName).split(",")
+			)
+				.map(String::trim)
+				.mapToLong(Long::parseLong)
+				.toArray();
+			distributions.put(dieTypeName, new FaceDistribution(counts));
+		}
+
+		return distributions;
+	}
+
+	static void save(
+		final Path path,
+		final Map<String, FaceDistribution> distributions
+	) throws IOException {
+		final Properties props = new Properties();
+		distributions.forEach(
+			(dieTypeName, distribution) -> props.setProperty(
+				dieTypeName,
+				Arrays.stream(distribution.counts())
+					.mapToObj(Long::toString)
+					.collect(Collectors.joining(","))
+			)
+		);
+
+		try (final Writer out = Files.newBufferedWriter(path)) {
+			props.store(out, "Face counts per die type, from physical rolls");
+		}
+	}
+}
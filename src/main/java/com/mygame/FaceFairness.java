@@ -0,0 +1,306 @@
+package com.mygame;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import java.util.stream.IntStream;
+
+/* How fair a die type's face counts are,
+ * i.e., how well they fit every face being equally likely:
+ * Pearson's chi-squared test
+ * and the Kolmogorov-Smirnov test
+ * (of the faces in order of their numeric values,
+ * so it catches a lean towards high or low faces
+ * that chi-squared, which ignores the order, is slow to),
+ * each with its p-value,
+ * the probability of so large a statistic from a fair die.
+ * The KS p-value is Kolmogorov's asymptotic one,
+ * which for a die's few discrete faces is conservative (too large).
+ * Each face's bias is its frequency relative to a fair die's,
+ * e.g., +2% for a D6 face that comes up 17% rather than 16.67% of the time,
+ * given with a Wilson score interval. */
+final class FaceFairness {
+	private final DieType dieType;
+	private final long[] counts;
+	private final long rollCount;
+	private final double chiSquared;
+	private final double chiSquaredPValue;
+	private final double ksStatistic;
+	private final double ksPValue;
+
+	FaceFairness(final DieType dieType, final long[] counts) {
+		final int n = dieType.faces().length;
+		this.rollCount = Arrays.stream(counts).sum();
+		if (counts.length != n || n < 2 || this.rollCount <= 0) {
+			throw new IllegalArgumentException("invalid face counts");
+		}
+
+		this.dieType = dieType;
+		this.counts = counts.clone();
+
+		final double expected = (double)this.rollCount / n;
+		double chiSquared = 0;
+		for (final long count : counts) {
+			chiSquared += (count - expected) * (count - expected) / expected;
+		}
+		this.chiSquared = chiSquared;
+		this.chiSquaredPValue = regularizedGammaQ((n - 1) / 2.0, chiSquared / 2);
+
+		/* The largest gap between the cumulative face frequencies,
+		 * in order of the faces' values, and a fair die's. */
+		final int[] faceIdxs = IntStream.range(0, n)
+			.boxed()
+			.sorted(
+				Comparator.comparingInt(f -> dieType.faces()[f].numericValue())
+			)
+			.mapToInt(f -> f)
+			.toArray();
+		long cumulativeCount = 0;
+		double ksStatistic = 0;
+		for (int k = 0; k < n; ++k) {
+			cumulativeCount += counts[faceIdxs[k]];
+			ksStatistic = Math.max(
+				ksStatistic,
+				Math.abs(
+					(double)cumulativeCount / this.rollCount - (k + 1.0) / n
+				)
+			);
+		}
+		this.ksStatistic = ksStatistic;
+		final double sqrtRollCount = Math.sqrt(this.rollCount);
+		/* With Stephens's correction for finite samples. */
+		this.ksPValue = kolmogorovQ(
+			(sqrtRollCount + 0.12 + 0.11 / sqrtRollCount) * ksStatistic
+		);
+	}
+
+	DieType dieType() {
+		return this.dieType;
+	}
+
+	long rollCount() {
+		return this.rollCount;
+	}
+
+	double chiSquared() {
+		return this.chiSquared;
+	}
+
+	int degreesOfFreedom() {
+		return this.counts.length - 1;
+	}
+
+	double chiSquaredPValue() {
+		return this.chiSquaredPValue;
+	}
+
+	double ksStatistic() {
+		return this.ksStatistic;
+	}
+
+	double ksPValue() {
+		return this.ksPValue;
+	}
+
+	/* Whether neither test rejects a fair die
+	 * at the given significance (each). */
+	boolean isFair(final double significance) {
+		return this.chiSquaredPValue >= significance
+			&& this.ksPValue >= significance;
+	}
+
+	/* A line per face, in the order of the die type's faces,
+	 * e.g., "6: 0.17012 (+2.07%, +1.45% to +2.69%) *",
+	 * with its frequency, its bias and the bias's interval,
+	 * marked with a * if the interval excludes no bias.
+	 * The intervals have the given confidence all together
+	 * (each has 1 - (1 - confidence) / faces, by Bonferroni). */
+	String describeFaces(final double confidence) {
+		final int n = this.counts.length;
+		final double z = normalQuantile(1 - (1 - confidence) / n / 2);
+
+		final StringBuilder sb = new StringBuilder();
+		for (int f = 0; f < n; ++f) {
+			/* The Wilson score interval of the face's probability. */
+			final double p = (double)this.counts[f] / this.rollCount;
+			final double zz = z * z / this.rollCount;
+			final double center = (p + zz / 2) / (1 + zz);
+			final double halfWidth = z
+				* Math.sqrt(p * (1 - p) / this.rollCount + zz / this.rollCount / 4)
+				/ (1 + zz);
+			final double low = (center - halfWidth) * n - 1;
+			final double high = (center + halfWidth) * n - 1;
+
+			if (f > 0) {
+				sb.append(System.lineSeparator());
+			}
+			sb.append(
+				String.format(
+					"%s: %.5f (%+.2f%%, %+.2f%% to %+.2f%%)%s",
+					this.dieType.faces()[f].displayValue(),
+					p,
+					(p * n - 1) * 100,
+					low * 100,
+					high * 100,
+					low > 0 || high < 0 ? " *" : ""
+				)
+			);
+		}
+
+		return sb.toString();
+	}
+
+	/* The regularized upper incomplete gamma function Q(a, x),
+	 * the probability of a chi-squared statistic of 2 x or more
+	 * with 2 a degrees of freedom:
+	 * by its series for small x, otherwise by its continued fraction
+	 * (evaluated by Lentz's method). */
+	static double regularizedGammaQ(final double a, final double x) {
+		final int maxIterations = 1000;
+		final double epsilon = 1e-15;
+		final double tiny = 1e-300;
+
+		if (x <= 0) {
+			return 1;
+		}
+		final double logPrefactor = a * Math.log(x) - x - logGamma(a);
+
+		if (x < a + 1) {
+			double term = 1 / a, sum = term;
+			for (int i = 1; i < maxIterations; ++i) {
+				term *= x / (a + i);
+				sum += term;
+				if (Math.abs(term) < Math.abs(sum) * epsilon) {
+					break;
+				}
+			}
+			return Math.max(0, 1 - sum * Math.exp(logPrefactor));
+		}
+
+		double b = x + 1 - a;
+		double c = 1 / tiny;
+		double d = 1 / b;
+		double h = d;
+		for (int i = 1; i < maxIterations; ++i) {
+			final double an = -i * (i - a);
+			b += 2;
+			d = an * d + b;
+			d = Math.abs(d) < tiny ? tiny : d;
+			c = b + an / c;
+			c = Math.abs(c) < tiny ? tiny : c;
+			d = 1 / d;
+			final double delta = d * c;
+			h *= delta;
+			if (Math.abs(delta - 1) < epsilon) {
+				break;
+			}
+		}
+		return Math.exp(logPrefactor) * h;
+	}
+
+	/* ln(Gamma(x)) for x > 0, by Lanczos's approximation
+	 * (g = 7, accurate to about 1e-15). */
+	static double logGamma(final double x) {
+		final double[] coefficients = {
+			0.99999999999980993,
+			676.5203681218851,
+			-1259.1392167224028,
+			771.32342877765313,
+			-176.61502916214059,
+			12.507343278686905,
+			-0.13857109526572012,
+			9.9843695780195716e-6,
+			1.5056327351493116e-7,
+		};
+
+		if (x < 0.5) {
+			/* By the reflection formula. */
+			return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x)))
+				- logGamma(1 - x);
+		}
+
+		final double y = x - 1;
+		double sum = coefficients[0];
+		for (int i = 1; i < coefficients.length; ++i) {
+			sum += coefficients[i] / (y + i);
+		}
+		final double t = y + 7.5;
+		return 0.5 * Math.log(2 * Math.PI)
+			+ (y + 0.5) * Math.log(t)
+			- t
+			+ Math.log(sum);
+	}
+
+	/* The probability that the Kolmogorov distribution exceeds z,
+	 * by whichever of its two series converges fast there. */
+	static double kolmogorovQ(final double z) {
+		if (z <= 0) {
+			return 1;
+		}
+
+		if (z < 1.18) {
+			final double y = Math.exp(-Math.PI * Math.PI / (8 * z * z));
+			return 1 - Math.sqrt(2 * Math.PI) / z
+				* (y + Math.pow(y, 9) + Math.pow(y, 25) + Math.pow(y, 49));
+		}
+
+		final double x = Math.exp(-2 * z * z);
+		return 2 * (x - Math.pow(x, 4) + Math.pow(x, 9));
+	}
+
+	/* The p-quantile of the standard normal distribution, for 0 < p < 1,
+	 * by Acklam's rational approximation
+	 * (accurate to about 1e-9). */
+	static double normalQuantile(final double p) {
+		final double[] a = {
+			-3.969683028665376e+01,
+			2.209460984245205e+02,
+			-2.759285104469687e+02,
+			1.383577518672690e+02,
+			-3.066479806614716e+01,
+			2.506628277459239e+00,
+		};
+		final double[] b = {
+			-5.447609879822406e+01,
+			1.615858368580409e+02,
+			-1.556989798598866e+02,
+			6.680131188771972e+01,
+			-1.328068155288572e+01,
+		};
+		final double[] c = {
+			-7.784894002430293e-03,
+			-3.223964580411365e-01,
+			-2.400758277161838e+00,
+			-2.549732539343734e+00,
+			4.374664141464968e+00,
+			2.938163982698783e+00,
+		};
+		final double[] d = {
+			7.784695709041462e-03,
+			3.224671290700398e-01,
+			2.445134137142996e+00,
+			3.754408661907416e+00,
+		};
+		final double pLow = 0.02425;
+
+		if (!(p > 0 && p < 1)) {
+			throw new IllegalArgumentException(
+				String.format("not a probability strictly between 0 and 1: %s", p)
+			);
+		}
+
+		if (p < pLow || p > 1 - pLow) {
+			/* The tails. */
+			final double q = Math.sqrt(-2 * Math.log(Math.min(p, 1 - p)));
+			final double x =
+				(((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+					/ ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+			return p < pLow ? x : -x;
+		}
+
+		final double q = p - 0.5;
+		final double r = q * q;
+		return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+			/ (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+	}
+}
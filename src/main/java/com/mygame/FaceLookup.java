@@ -0,0 +1,230 @@
+package com.mygame;
+
+import java.util.Arrays;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+
+/* Finds which face of a die is up
+ * without trying every face:
+ * the directions the die's original frame can have as "up"
+ * are divided into a GRID_SIZE x GRID_SIZE octahedral grid
+ * (the unit sphere folded onto an octahedron and unfolded onto a square),
+ * and each grid cell lists the faces that can be "most upward"
+ * for some direction in the cell.
+ * Almost every cell lies inside a single face's region,
+ * so a lookup is usually a single table read;
+ * cells straddling a boundary between faces
+ * compare just the few faces listed for them.
+ * The result is exactly that of comparing every face.
+ * A lookup is immutable once built,
+ * so it can be shared by several threads,
+ * and reading allocates nothing. */
+final class FaceLookup {
+	static final int GRID_SIZE = 64;
+	/* A die is cocked if it is tilted off the face it is read on
+	 * by more than this fraction of the tilt
+	 * at which it would balance on an edge. */
+	private static final float COCKED_TILT_FRACTION = 0.5f;
+
+	/* The faces' outward unit normals, component by component. */
+	private final float[] normalXs, normalYs, normalZs;
+	/* The candidate faces of grid cell i (indexed row by row)
+	 * are candidates[cellStarts[i]] to candidates[cellStarts[i + 1] - 1]. */
+	private final int[] cellStarts;
+	private final int[] candidates;
+
+	FaceLookup(final DieFace[] faces) {
+		final int nFace = faces.length;
+		this.normalXs = new float[nFace];
+		this.normalYs = new float[nFace];
+		this.normalZs = new float[nFace];
+		for (int f = 0; f < nFace; ++f) {
+			this.normalXs[f] = faces[f].normal().x;
+			this.normalYs[f] = faces[f].normal().y;
+			this.normalZs[f] = faces[f].normal().z;
+		}
+
+		final int nCell = GRID_SIZE * GRID_SIZE;
+		this.cellStarts = new int[nCell + 1];
+		int[] candidates = new int[nCell];
+		int candidateCount = 0;
+
+		final float[] center = new float[3];
+		final float[] boundary = new float[3];
+		/* Points sampled per cell edge
+		 * when measuring how far the cell reaches from its center. */
+		final int nEdgeSample = 8;
+		/* Slack for the cell not being exactly a spherical cap. */
+		final float radiusSlack = 1.25f;
+		for (int row = 0; row < GRID_SIZE; ++row) {
+			for (int col = 0; col < GRID_SIZE; ++col) {
+				final float u0 = cellToOct(col), u1 = cellToOct(col + 1);
+				final float v0 = cellToOct(row), v1 = cellToOct(row + 1);
+				octToDirection((u0 + u1) / 2, (v0 + v1) / 2, center);
+
+				/* The largest angle between the cell's center direction
+				 * and any direction in the cell. */
+				float radius = 0;
+				for (int s = 0; s <= nEdgeSample; ++s) {
+					final float t = (float)s / nEdgeSample;
+					final float u = u0 + t * (u1 - u0);
+					final float v = v0 + t * (v1 - v0);
+					final float[][] edgePoints = {
+						{ u, v0 }, { u, v1 }, { u0, v }, { u1, v },
+					};
+					for (final float[] p : edgePoints) {
+						octToDirection(p[0], p[1], boundary);
+						final float cos = Math.min(
+							1,
+							center[0] * boundary[0]
+							+ center[1] * boundary[1]
+							+ center[2] * boundary[2]
+						);
+						radius = Math.max(radius, (float)Math.acos(cos));
+					}
+				}
+				radius *= radiusSlack;
+
+				/* For unit vectors d, c and n,
+				 * |d . n - c . n| <= |d - c| <= angle(d, c).
+				 * So if the angle between d and c is at most radius,
+				 * a face can only beat the face best at the center
+				 * somewhere in the cell
+				 * if its dot product with c is
+				 * within 2 * radius of the best one. */
+				float bestDot = Float.NEGATIVE_INFINITY;
+				for (int f = 0; f < nFace; ++f) {
+					bestDot = Math.max(bestDot, this.dot(f, center));
+				}
+				final int cell = row * GRID_SIZE + col;
+				this.cellStarts[cell] = candidateCount;
+				for (int f = 0; f < nFace; ++f) {
+					if (this.dot(f, center) >= bestDot - 2 * radius) {
+						if (candidateCount == candidates.length) {
+							candidates =
+								Arrays.copyOf(candidates, 2 * candidateCount);
+						}
+						candidates[candidateCount++] = f;
+					}
+				}
+			}
+		}
+		this.cellStarts[nCell] = candidateCount;
+		this.candidates = Arrays.copyOf(candidates, candidateCount);
+	}
+
+	/* Read which face of a die with the given rotation is up,
+	 * storing its index (into the DieType's faces) and the confidence
+	 * in store, and return store. */
+	FaceReading read(final Quaternion rotation, final FaceReading store) {
+		/* The original direction that the rotation takes to (0, 1, 0)
+		 * is the inverse rotation applied to (0, 1, 0),
+		 * that is, the second row of the rotation's matrix. */
+		final float x = rotation.getX(), y = rotation.getY();
+		final float z = rotation.getZ(), w = rotation.getW();
+		final float norm = x * x + y * y + z * z + w * w;
+		final float s = norm > 0 ? 2 / norm : 0;
+		final float upX = s * (x * y + w * z);
+		final float upY = 1 - s * (x * x + z * z);
+		final float upZ = s * (y * z - w * x);
+
+		/* Fold the direction onto the octahedron |x| + |y| + |z| = 1
+		 * and unfold the lower half over the corners of the square. */
+		final float l1 = Math.abs(upX) + Math.abs(upY) + Math.abs(upZ);
+		float u = upX / l1, v = upY / l1;
+		if (upZ < 0) {
+			final float uFolded = (1 - Math.abs(v)) * Math.copySign(1, u);
+			final float vFolded = (1 - Math.abs(u)) * Math.copySign(1, v);
+			u = uFolded;
+			v = vFolded;
+		}
+		final int cell = octToCell(v) * GRID_SIZE + octToCell(u);
+
+		final int start = this.cellStarts[cell];
+		final int end = this.cellStarts[cell + 1];
+		int bestFace = this.candidates[start];
+		float bestDot = this.dot(bestFace, upX, upY, upZ);
+		for (int i = start + 1; i < end; ++i) {
+			final int f = this.candidates[i];
+			final float dot = this.dot(f, upX, upY, upZ);
+			if (dot > bestDot) {
+				bestDot = dot;
+				bestFace = f;
+			}
+		}
+
+		store.faceIndex = bestFace;
+		store.confidence = bestDot;
+		return store;
+	}
+
+	/* The confidence below which a die with the given faces is cocked.
+	 * A die balancing on the edge between the two closest faces
+	 * is tilted off either by half the angle between their normals,
+	 * so the smaller that angle, the less tilt is tolerated. */
+	static float cockedConfidence(final DieFace[] faces) {
+		float minAngle = FastMath.PI;
+		for (int f = 0; f < faces.length; ++f) {
+			for (int g = f + 1; g < faces.length; ++g) {
+				minAngle = Math.min(
+					minAngle,
+					faces[f].normal().angleBetween(faces[g].normal())
+				);
+			}
+		}
+
+		return FastMath.cos(COCKED_TILT_FRACTION * minAngle / 2);
+	}
+
+	/* The number of faces listed for grid cells, on average:
+	 * how many faces a lookup compares. */
+	float averageCandidateCount() {
+		return (float)this.candidates.length / (GRID_SIZE * GRID_SIZE);
+	}
+
+	private float dot(final int face, final float[] direction) {
+		return this.dot(face, direction[0], direction[1], direction[2]);
+	}
+
+	private float dot(
+		final int face,
+		final float x,
+		final float y,
+		final float z
+	) {
+		return this.normalXs[face] * x
+			+ this.normalYs[face] * y
+			+ this.normalZs[face] * z;
+	}
+
+	/* The octahedral coordinate (in [-1, 1]) of a grid line. */
+	private static float cellToOct(final int line) {
+		return 2f * line / GRID_SIZE - 1;
+	}
+
+	/* The grid column (or row) of an octahedral coordinate. */
+	private static int octToCell(final float oct) {
+		final int cell = (int)((oct + 1) / 2 * GRID_SIZE);
+		return Math.clamp(cell, 0, GRID_SIZE - 1);
+	}
+
+	/* Store in store the unit direction
+	 * at the given octahedral coordinates. */
+	private static void octToDirection(
+		final float u,
+		final float v,
+		final float[] store
+	) {
+		float x = u, y = v;
+		final float z = 1 - Math.abs(u) - Math.abs(v);
+		if (z < 0) {
+			x = (1 - Math.abs(v)) * Math.copySign(1, u);
+			y = (1 - Math.abs(u)) * Math.copySign(1, v);
+		}
+		final float length = (float)Math.sqrt(x * x + y * y + z * z);
+		store[0] = x / length;
+		store[1] = y / length;
+		store[2] = z / length;
+	}
+}
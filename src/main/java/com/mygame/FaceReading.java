@@ -0,0 +1,19 @@
+package com.mygame;
+
+import com.jme3.math.Quaternion;
+
+/* Where a face reading is stored,
+ * so that reading dice allocates nothing.
+ * Each thread reading dice needs its own. */
+final class FaceReading {
+	/* Scratch space for the die's rotation. */
+	final Quaternion rotation = new Quaternion();
+	/* The index of the face that is up, into the DieType's faces. */
+	int faceIndex;
+	/* The dot product of the face's outward unit normal
+	 * with the die's "up" direction:
+	 * 1 if the die lies flat on the face
+	 * (for dice whose faces are read as lying on top),
+	 * less the more the die is tilted (cocked) away from it. */
+	float confidence;
+}
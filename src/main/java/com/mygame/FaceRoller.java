@@ -0,0 +1,28 @@
+package com.mygame;
+
+import java.util.random.RandomGenerator;
+
+/* Rolls single dice without simulating them,
+ * for the dice that a dice-group type's evaluator rolls again
+ * (exploding and rerolled dice in dice notation). */
+@FunctionalInterface
+interface FaceRoller {
+	/* For dice-group types that never roll dice again. */
+	static final FaceRoller NONE = dieType -> {
+		throw new IllegalStateException(
+			String.format("cannot roll a %s again", dieType.name())
+		);
+	};
+
+	/* The numeric value of the face
+	 * that a die of the given type comes up on. */
+	int roll(DieType dieType);
+
+	/* Every face equally likely, drawn from random. */
+	static FaceRoller uniform(final RandomGenerator random) {
+		return dieType -> {
+			final DieFace[] faces = dieType.faces();
+			return faces[random.nextInt(faces.length)].numericValue();
+		};
+	}
+}
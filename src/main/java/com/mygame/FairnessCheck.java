@@ -0,0 +1,42 @@
+package com.mygame;
+
+import java.util.SplittableRandom;
+
+/* A check of whether every die type rolls fair,
+ * as given on the command line:
+ * --fairness [ROLLS [WORKERS [SEED]]],
+ * where ROLLS is how many times to physically roll each die type,
+ * WORKERS is how many physics spaces to roll them in, in parallel,
+ * and SEED seeds the rolls (by default, a random seed),
+ * so that a failed check can be repeated exactly.
+ * The process exits with status 1 if any die type is found unfair,
+ * so the check can gate changes to the dice's shapes or throws. */
+record FairnessCheck(int rollCount, int workerCount, long seed) {
+	static final String ARG = "--fairness";
+	/* The probability of failing the check with fair dice,
+	 * shared among all die types and both tests. */
+	static final double SIGNIFICANCE = 0.001;
+	/* The confidence of each die type's per-face intervals,
+	 * taken together. */
+	static final double CONFIDENCE = 0.95;
+
+	static FairnessCheck parse(final String[] args) {
+		if (args.length < 1 || args.length > 4 || !args[0].equals(ARG)) {
+			throw new IllegalArgumentException(
+				String.format("usage: %s [ROLLS [WORKERS [SEED]]]", ARG)
+			);
+		}
+
+		final int rollCount = args.length > 1
+			? HeadlessBatch.parsePositiveInt(args[1])
+			: 1_000_000;
+		final int workerCount = args.length > 2
+			? HeadlessBatch.parsePositiveInt(args[2])
+			: Runtime.getRuntime().availableProcessors();
+		final long seed = args.length > 3
+			? HeadlessBatch.parseLong(args[3])
+			: new SplittableRandom().nextLong();
+
+		return new FairnessCheck(rollCount, workerCount, seed);
+	}
+}
@@ -0,0 +1,93 @@
+package com.mygame;
+
+import java.util.SplittableRandom;
+
+/* A batch of rolls to perform in headless mode,
+ * as given on the command line:
+ * --headless TYPE [COUNT [ROLLS [WORKERS [SEED]]]]
+ * or
+ * --statistical TYPE [COUNT [ROLLS [SEED]]],
+ * where TYPE is a dice-group type name (e.g., D20) or dice notation,
+ * COUNT is how many dice groups to roll at once,
+ * ROLLS is how many times to roll them
+ * and WORKERS is how many physics spaces to roll them in, in parallel
+ * (by default, one per available processor).
+ * SEED seeds the whole batch (by default, a random seed),
+ * which is reproducible given the same seed.
+ * --statistical samples the faces from the calibrated face distributions
+ * instead of simulating the dice. */
+record HeadlessBatch(
+	String diceGroupTypeName,
+	int diceGroupCount,
+	int rollCount,
+	int workerCount,
+	long seed,
+	boolean statistical
+) {
+	static final String ARG = "--headless";
+	static final String STATISTICAL_ARG = "--statistical";
+
+	static HeadlessBatch parse(final String[] args) {
+		final boolean statistical =
+			args.length > 0 && args[0].equals(STATISTICAL_ARG);
+		final int nArgMax = statistical ? 5 : 6;
+		if (
+			args.length < 2
+			|| args.length > nArgMax
+			|| !statistical && !args[0].equals(ARG)
+		) {
+			throw new IllegalArgumentException(
+				String.format(
+					"usage: %s TYPE [COUNT [ROLLS [WORKERS [SEED]]]] | %s TYPE [COUNT [ROLLS [SEED]]]",
+					ARG,
+					STATISTICAL_ARG
+				)
+			);
+		}
+
+		final String diceGroupTypeName = args[1];
+		final int diceGroupCount =
+			args.length > 2 ? parsePositiveInt(args[2]) : 1;
+		final int rollCount =
+			args.length > 3 ? parsePositiveInt(args[3]) : 1000;
+		final int workerCount = !statistical && args.length > 4
+			? parsePositiveInt(args[4])
+			: Runtime.getRuntime().availableProcessors();
+		final int seedArgIdx = statistical ? 4 : 5;
+		final long seed = args.length > seedArgIdx
+			? parseLong(args[seedArgIdx])
+			: new SplittableRandom().nextLong();
+
+		return new HeadlessBatch(
+			diceGroupTypeName,
+			diceGroupCount,
+			rollCount,
+			workerCount,
+			seed,
+			statistical
+		);
+	}
+
+	static long parseLong(final String s) {
+		try {
+			return Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+				String.format("not an integer: %s", s)
+			);
+		}
+	}
+
+	static int parsePositiveInt(final String s) {
+		try {
+			final int x = Integer.parseInt(s);
+			if (x > 0) {
+				return x;
+			}
+		} catch (NumberFormatException e) {}
+
+		throw new IllegalArgumentException(
+			String.format("not a positive integer: %s", s)
+		);
+	}
+}
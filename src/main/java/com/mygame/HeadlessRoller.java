@@ -0,0 +1,260 @@
+package com.mygame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import java.util.function.Consumer;
+
+import java.util.random.RandomGenerator;
+
+import com.jme3.bullet.PhysicsSpace;
+
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
+
+import com.jme3.bullet.objects.PhysicsRigidBody;
+
+import com.jme3.math.Vector3f;
+
+/* Rolls dice in a bare physics space,
+ * without any scene graph or rendering,
+ * stepping the simulation as fast as the CPU allows.
+ * Every roll gets a fresh physics space
+ * and draws all its randomness from a generator seeded with its seed,
+ * so a roll can be replayed bit for bit from its seed
+ * (on the same platform and Bullet build,
+ * with the same collision-shape strategy),
+ * whatever the roller rolled before.
+ * The die bodies, though, are pooled and reused from roll to roll,
+ * as the window's are
+ * (a body is reset in full before it is rolled again).
+ * A roller must only be used by the thread that created it. */
+final class HeadlessRoller {
+	/* Simulated seconds per physics step;
+	 * the same as BulletAppState's default accuracy. */
+	static final float TIME_STEP = 1f / 60;
+	/* A roll is abandoned (and its dice read as they lie)
+	 * if it has not settled after this many simulated seconds. */
+	static final float ROLL_TIME_LIMIT = 30;
+
+	/* What the dice collide as. */
+	private final CollisionShapeStrategy collisionShapeStrategy;
+	/* The ground and the walls, added to each roll's physics space. */
+	private final List<PhysicsRigidBody> trayBodies;
+	private final DieBodyRegistry dieBodies;
+	/* The bodies of the dice of past rolls, out of any space. */
+	private final DiePool<PhysicsRigidBody> dieBodyPool;
+	private final SettleDetector settleDetector;
+	private final FaceReading faceReading;
+	/* How many cocked dice the last roll rolled again,
+	 * and how many escaped dice it rolled back into the tray. */
+	private int lastRerollCount;
+	private int lastEscapeCount;
+
+	HeadlessRoller(final CollisionShapeStrategy collisionShapeStrategy) {
+		this.collisionShapeStrategy = collisionShapeStrategy;
+		this.trayBodies = createDiceTray(TrayMode.FULL);
+		this.dieBodies = new DieBodyRegistry();
+		this.dieBodyPool = new DiePool<>();
+		this.settleDetector = new SettleDetector();
+		this.faceReading = new FaceReading();
+	}
+
+	/* A physics space containing just the dice tray.
+	 * Bullet's state (such as the broadphase's proxy IDs,
+	 * which order the contact pairs,
+	 * and its dynamic trees' incremental rebalancing)
+	 * depends on everything that has been in a space,
+	 * and is not reset by taking the bodies out,
+	 * so a roll is only reproducible in a fresh one.
+	 * HeadlessRollBenchmark.createAndDestroySpace measures what that costs,
+	 * to set against rollUntilSettled. */
+	PhysicsSpace createSpace() {
+		final float worldXzAbsMax = Main.GROUND_SIZE / 2;
+		final float worldYMin = -Main.DICE_TRAY_WALL_HEIGHT;
+		final float worldYMax = 4 * Main.DICE_TRAY_WALL_HEIGHT;
+		final PhysicsSpace space = new PhysicsSpace(
+			new Vector3f(-worldXzAbsMax, worldYMin, -worldXzAbsMax),
+			new Vector3f(worldXzAbsMax, worldYMax, worldXzAbsMax),
+			PhysicsSpace.BroadphaseType.DBVT
+		);
+		for (final PhysicsRigidBody trayBody : this.trayBodies) {
+			space.addCollisionObject(trayBody);
+		}
+
+		return space;
+	}
+
+	/* Take the tray back out of a space from createSpace() and free it. */
+	void destroySpace(final PhysicsSpace space) {
+		for (final PhysicsRigidBody trayBody : this.trayBodies) {
+			space.removeCollisionObject(trayBody);
+		}
+		space.destroy();
+	}
+
+	/* Build the bodies of the same tray
+	 * as Main.setupGround and Main.setupWalls
+	 * (with the ground of the given tray mode),
+	 * minus the geometry. */
+	static List<PhysicsRigidBody> createDiceTray(final TrayMode trayMode) {
+		final List<PhysicsRigidBody> trayBodies = new ArrayList<>();
+
+		final float groundThickness = Main.DICE_TRAY_WALL_THICKNESS;
+		final float groundSize = trayMode.groundSize();
+		final PhysicsRigidBody groundBody = new PhysicsRigidBody(
+			new BoxCollisionShape(
+				new Vector3f(
+					groundSize / 2,
+					groundThickness / 2,
+					groundSize / 2
+				)
+			),
+			PhysicsRigidBody.massForStatic
+		);
+		/* The top of the ground is at y = 0, as in Main.setupGround. */
+		groundBody.setPhysicsLocation(
+			new Vector3f(0, -groundThickness / 2, 0)
+		);
+		trayBodies.add(groundBody);
+
+		for (int i = 0; i < Main.WALL_POSITIONS.length; ++i) {
+			final Vector3f position = Main.WALL_POSITIONS[i];
+			final float[] wallDim = Main.WALL_DIMENSIONS[i];
+
+			final PhysicsRigidBody wallBody = new PhysicsRigidBody(
+				new BoxCollisionShape(
+					new Vector3f(wallDim[0], wallDim[1], wallDim[2])
+						.multLocal(0.5f)
+				),
+				PhysicsRigidBody.massForStatic
+			);
+			wallBody.setPhysicsLocation(position);
+			trayBodies.add(wallBody);
+		}
+
+		return trayBodies;
+	}
+
+	/* Roll diceGroupCount dice groups of the given type,
+	 * drawing from a generator seeded with seed,
+	 * step the simulation until the dice have settled,
+	 * and add each dice group's roll result to aggregator
+	 * and pass the dice group's roll to sink
+	 * as soon as that group has settled
+	 * (its faces are its own, for sink to keep).
+	 * Return the simulated time (in seconds) that the roll took. */
+	float roll(
+		final DiceGroupType diceGroupType,
+		final int diceGroupCount,
+		final long seed,
+		final RollAggregator aggregator,
+		final Consumer<? super DiceGroupRoll> sink
+	) {
+		final DieType[] dieTypes = diceGroupType.dieTypes();
+		final PhysicsSpace space = this.createSpace();
+		final RandomGenerator random = new SplittableRandom(seed);
+		/* For dice notation that rolls dice again. */
+		final FaceRoller faceRoller = FaceRoller.uniform(random);
+
+		for (int i = 0; i < diceGroupCount; ++i) {
+			for (final DieType dieType : dieTypes) {
+				/* Reuse a pooled body if there is one; otherwise create it. */
+				PhysicsRigidBody dieBody = this.dieBodyPool.acquire(dieType);
+				if (dieBody != null) {
+					/* Clear whatever its last roll left in it. */
+					dieBody.setLinearVelocity(Vector3f.ZERO);
+					dieBody.setAngularVelocity(Vector3f.ZERO);
+					dieBody.clearForces();
+					dieBody.activate();
+				} else {
+					dieBody = new PhysicsRigidBody(
+						dieType.collisionShape(this.collisionShapeStrategy)
+					);
+				}
+				space.addCollisionObject(dieBody);
+				this.dieBodies.add(dieBody);
+
+				Main.rollDie(dieBody, random);
+			}
+		}
+
+		/* Read each dice group as soon as all of its dice have settled. */
+		final int nDie = dieTypes.length;
+		final boolean[] read = new boolean[diceGroupCount];
+		final int[] values = new int[nDie];
+		int readCount = 0;
+
+		this.settleDetector.reset();
+		float time = 0;
+		while (readCount < diceGroupCount) {
+			space.update(TIME_STEP, 0);
+			time += TIME_STEP;
+
+			this.settleDetector.rerollEscaped(this.dieBodies, random);
+			this.settleDetector.update(this.dieBodies, TIME_STEP);
+			final boolean timeUp = time >= ROLL_TIME_LIMIT;
+
+			for (int i = 0; i < diceGroupCount; ++i) {
+				if (
+					read[i]
+					|| !timeUp
+					&& !this.settleDetector.isSettled(i * nDie, (i + 1) * nDie)
+				) {
+					continue;
+				}
+
+				/* Out of time, the dice are read as they lie. */
+				final DieFace[] faces = new DieFace[nDie];
+				if (
+					!Main.readDiceGroup(
+						this.dieBodies,
+						this.settleDetector,
+						i * nDie,
+						dieTypes,
+						!timeUp,
+						random,
+						this.faceReading,
+						faces
+					)
+				) {
+					continue;
+				}
+
+				final DiceGroupRollResult result =
+					diceGroupType.rollResult(faces, values, faceRoller);
+				aggregator.add(dieTypes, faces, result);
+				sink.accept(new DiceGroupRoll(faces, result, time));
+				read[i] = true;
+				++readCount;
+			}
+		}
+
+		for (int i = 0; i < this.dieBodies.size(); ++i) {
+			final PhysicsRigidBody dieBody = this.dieBodies.get(i);
+			space.removeCollisionObject(dieBody);
+			this.dieBodyPool.release(dieTypes[i % nDie], dieBody);
+		}
+		this.dieBodies.clear();
+		this.destroySpace(space);
+		this.lastRerollCount = this.settleDetector.rerollCount();
+		this.lastEscapeCount = this.settleDetector.escapeCount();
+
+		return time;
+	}
+
+	int lastRerollCount() {
+		return this.lastRerollCount;
+	}
+
+	int lastEscapeCount() {
+		return this.lastEscapeCount;
+	}
+
+	/* Drop the tray; the roller is unusable afterwards.
+	 * (Each roll frees its own physics space,
+	 * and the pooled die bodies are left to the garbage collector.) */
+	void destroy() {
+		this.trayBodies.clear();
+	}
+}
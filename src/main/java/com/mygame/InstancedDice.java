@@ -0,0 +1,423 @@
+package com.mygame;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+import java.awt.geom.AffineTransform;
+
+import java.awt.image.BufferedImage;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jme3.asset.AssetManager;
+
+import com.jme3.font.BitmapText;
+
+import com.jme3.material.Material;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import com.jme3.renderer.queue.RenderQueue;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+
+import com.jme3.scene.instancing.InstancedNode;
+
+import com.jme3.texture.Texture2D;
+
+import com.jme3.texture.plugins.AWTLoader;
+
+/* Renders dice with GPU instancing.
+ * All dice of one type share one mesh and one material,
+ * and are drawn by one InstancedNode in a single draw call;
+ * the face labels are baked into a texture atlas
+ * instead of being BitmapText nodes on every die.
+ * The atlas and mesh of a die type are built
+ * from its prototype the first time that a die of that type is created,
+ * so the dice look the same as on the non-instanced path. */
+final class InstancedDice {
+	/* Width and height (in pixels) of a face's cell in an atlas. */
+	private static final int ATLAS_CELL_SIZE = 128;
+
+	private final AssetManager assetManager;
+	private final Node parent;
+	private final Map<DieType, InstancedDieType> instancedDieTypes;
+	private ColorRGBA dieColor;
+
+	InstancedDice(
+		final AssetManager assetManager,
+		final Node parent,
+		final ColorRGBA dieColor
+	) {
+		this.assetManager = assetManager;
+		this.parent = parent;
+		this.instancedDieTypes = new IdentityHashMap<>();
+		this.dieColor = dieColor;
+	}
+
+	/* Create a die of the given type and attach it to its InstancedNode.
+	 * It is not drawn until the next call to instance. */
+	Spatial createDie(final DieType dieType) {
+		final InstancedDieType idt = this.instancedDieTypes.computeIfAbsent(
+			dieType,
+			this::buildInstancedDieType
+		);
+
+		final Geometry die = idt.prototype().clone(false);
+		idt.node().attachChild(die);
+
+		return die;
+	}
+
+	/* Re-attach a die made by createDie, since detached,
+	 * to its InstancedNode.
+	 * Like a created die, it is not drawn until the next call to instance. */
+	void attachDie(final DieType dieType, final Spatial die) {
+		this.instancedDieTypes.get(dieType).node().attachChild(die);
+	}
+
+	/* Gather the dice created since the last call into their instance data.
+	 * (Detaching a die needs no such call.) */
+	void instance() {
+		for (final InstancedDieType idt : this.instancedDieTypes.values()) {
+			idt.node().instance();
+		}
+	}
+
+	void setDieColor(final ColorRGBA color) {
+		this.dieColor = color;
+		for (final InstancedDieType idt : this.instancedDieTypes.values()) {
+			setMaterialColor(idt.prototype().getMaterial(), color);
+		}
+	}
+
+	private InstancedDieType buildInstancedDieType(final DieType dieType) {
+		final Node prototype = (Node)dieType.prototype();
+		final List<AtlasFace> faces = collectAtlasFaces(prototype);
+		final Mesh mesh = buildMesh(prototype.getChild(0), faces);
+
+		final Material material = new Material(
+			this.assetManager,
+			"Common/MatDefs/Light/Lighting.j3md"
+		);
+		material.setBoolean("UseMaterialColors", true);
+		material.setBoolean("UseInstancing", true);
+		material.setTexture("DiffuseMap", buildAtlas(faces));
+		setMaterialColor(material, this.dieColor);
+
+		final Geometry geometry = new Geometry(dieType.name(), mesh, material);
+		geometry.setLocalScale(prototype.getLocalScale().getX());
+		geometry.setShadowMode(RenderQueue.ShadowMode.CastAndReceive);
+
+		final InstancedNode node = new InstancedNode(
+			String.format("Instanced %s", dieType.name())
+		);
+		node.setShadowMode(RenderQueue.ShadowMode.CastAndReceive);
+		this.parent.attachChild(node);
+
+		return new InstancedDieType(geometry, node);
+	}
+
+	private static void setMaterialColor(
+		final Material material,
+		final ColorRGBA color
+	) {
+		/* The atlas is white with black labels,
+		 * so that it can be tinted by the material colors. */
+		material.setColor("Ambient", color);
+		material.setColor("Diffuse", color);
+	}
+
+	/* Group the prototype's labels by the real face that they lie on.
+	 * Every child of the prototype but the first (the model)
+	 * is a label node holding one BitmapText,
+	 * rotated such that its local z axis is the outward normal of its face
+	 * and its local y axis points towards the top of the text. */
+	private static List<AtlasFace> collectAtlasFaces(final Node prototype) {
+		final List<AtlasFace> faces = new ArrayList<>();
+
+		final List<Spatial> children = prototype.getChildren();
+		for (int i = 1; i < children.size(); ++i) {
+			final Node label = (Node)children.get(i);
+			final BitmapText labelText = (BitmapText)label.getChild(0);
+			final Quaternion labelRot = label.getLocalRotation();
+			final Vector3f normal = labelRot.getRotationColumn(2);
+
+			final float sameFaceDotMin = 1 - 1e-3f;
+			AtlasFace face = null;
+			for (final AtlasFace f : faces) {
+				if (f.normal.dot(normal) > sameFaceDotMin) {
+					face = f;
+					break;
+				}
+			}
+			if (face == null) {
+				face = new AtlasFace(
+					normal,
+					labelRot.getRotationColumn(0),
+					labelRot.getRotationColumn(1)
+				);
+				faces.add(face);
+			}
+
+			face.labels.add(
+				new AtlasLabel(
+					labelText.getText(),
+					labelText.getSize(),
+					label.getLocalTranslation(),
+					labelRot.getRotationColumn(1)
+				)
+			);
+		}
+
+		for (final AtlasFace face : faces) {
+			face.center.zero();
+			for (final AtlasLabel label : face.labels) {
+				face.center.addLocal(label.position());
+			}
+			face.center.divideLocal(face.labels.size());
+		}
+
+		return faces;
+	}
+
+	/* Build a flat-shaded copy of the model's mesh,
+	 * mapping every face to its own cell of the atlas,
+	 * and record in each face the extent of its cell (AtlasFace.radius). */
+	private static Mesh buildMesh(
+		final Spatial model,
+		final List<AtlasFace> faces
+	) {
+		final List<Geometry> geometries = model instanceof Geometry g
+			? List.of(g)
+			: ((Node)model).descendantMatches(Geometry.class);
+
+		final List<Vector3f[]> triangles = new ArrayList<>();
+		for (final Geometry geometry : geometries) {
+			final Mesh mesh = geometry.getMesh();
+			for (int i = 0; i < mesh.getTriangleCount(); ++i) {
+				final Vector3f[] triangle = {
+					new Vector3f(), new Vector3f(), new Vector3f(),
+				};
+				mesh.getTriangle(i, triangle[0], triangle[1], triangle[2]);
+				triangles.add(triangle);
+			}
+		}
+
+		/* Assign each triangle to the face
+		 * whose normal is closest to its own. */
+		final AtlasFace[] triangleFaces = new AtlasFace[triangles.size()];
+		for (int i = 0; i < triangleFaces.length; ++i) {
+			final Vector3f[] t = triangles.get(i);
+			final Vector3f normal = t[1].subtract(t[0])
+				.crossLocal(t[2].subtract(t[0]))
+				.normalizeLocal();
+			/* The dice are convex and centered on the origin,
+			 * so an outward normal points away from the origin,
+			 * whatever the triangle's winding order. */
+			if (normal.dot(t[0]) < 0) {
+				normal.negateLocal();
+			}
+
+			float bestDot = Float.NEGATIVE_INFINITY;
+			for (final AtlasFace face : faces) {
+				final float dot = normal.dot(face.normal);
+				if (dot > bestDot) {
+					bestDot = dot;
+					triangleFaces[i] = face;
+				}
+			}
+
+			for (final Vector3f v : t) {
+				final Vector3f d = v.subtract(triangleFaces[i].center);
+				triangleFaces[i].radius = Math.max(
+					triangleFaces[i].radius,
+					Math.max(
+						Math.abs(d.dot(triangleFaces[i].x)),
+						Math.abs(d.dot(triangleFaces[i].y))
+					)
+				);
+			}
+		}
+
+		final int cols = atlasCols(faces.size());
+		final int rows = atlasRows(faces.size());
+
+		final int nVertex = 3 * triangles.size();
+		final float[] positions = new float[3 * nVertex];
+		final float[] normals = new float[3 * nVertex];
+		final float[] texCoords = new float[2 * nVertex];
+		final int[] indices = new int[nVertex];
+
+		for (int i = 0; i < triangles.size(); ++i) {
+			final Vector3f[] t = triangles.get(i);
+			final AtlasFace face = triangleFaces[i];
+			final int cell = faces.indexOf(face);
+			final int col = cell % cols, row = cell / cols;
+
+			/* Keep the winding order counterclockwise
+			 * when seen from outside the die. */
+			final Vector3f triangleNormal = t[1].subtract(t[0])
+				.crossLocal(t[2].subtract(t[0]));
+			final boolean flip = triangleNormal.dot(face.normal) < 0;
+
+			for (int j = 0; j < 3; ++j) {
+				final Vector3f v = t[flip ? 2 - j : j];
+				final int k = 3 * i + j;
+
+				positions[3 * k] = v.getX();
+				positions[3 * k + 1] = v.getY();
+				positions[3 * k + 2] = v.getZ();
+
+				normals[3 * k] = face.normal.getX();
+				normals[3 * k + 1] = face.normal.getY();
+				normals[3 * k + 2] = face.normal.getZ();
+
+				/* Face coordinates in [-1, 1]. */
+				final Vector3f d = v.subtract(face.center);
+				final float s = d.dot(face.x) / face.radius;
+				final float u = d.dot(face.y) / face.radius;
+
+				texCoords[2 * k] = (col + (s + 1) / 2) / cols;
+				/* The atlas is flipped vertically when loaded. */
+				texCoords[2 * k + 1] = 1 - (row + (1 - u) / 2) / rows;
+
+				indices[k] = k;
+			}
+		}
+
+		final Mesh mesh = new Mesh();
+		mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+		mesh.setBuffer(VertexBuffer.Type.Normal, 3, normals);
+		mesh.setBuffer(VertexBuffer.Type.TexCoord, 2, texCoords);
+		mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+		mesh.updateBound();
+
+		return mesh;
+	}
+
+	/* Draw the labels of each face, black on white, into its cell. */
+	private static Texture2D buildAtlas(final List<AtlasFace> faces) {
+		final int cols = atlasCols(faces.size());
+		final int rows = atlasRows(faces.size());
+		final BufferedImage image = new BufferedImage(
+			cols * ATLAS_CELL_SIZE,
+			rows * ATLAS_CELL_SIZE,
+			BufferedImage.TYPE_INT_ARGB
+		);
+
+		final Graphics2D g = image.createGraphics();
+		g.setRenderingHint(
+			RenderingHints.KEY_TEXT_ANTIALIASING,
+			RenderingHints.VALUE_TEXT_ANTIALIAS_ON
+		);
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.setColor(Color.BLACK);
+
+		final Font baseFont = new Font(Font.SANS_SERIF, Font.BOLD, 100);
+		final float baseFontHeight = g.getFontMetrics(baseFont).getHeight();
+
+		for (int cell = 0; cell < faces.size(); ++cell) {
+			final AtlasFace face = faces.get(cell);
+			final int col = cell % cols, row = cell / cols;
+			final float pixelsPerUnit = ATLAS_CELL_SIZE / (2 * face.radius);
+
+			for (final AtlasLabel label : face.labels) {
+				final Vector3f d = label.position().subtract(face.center);
+				final float cx = (col + 0.5f) * ATLAS_CELL_SIZE
+					+ d.dot(face.x) * pixelsPerUnit;
+				/* Image y grows downwards. */
+				final float cy = (row + 0.5f) * ATLAS_CELL_SIZE
+					- d.dot(face.y) * pixelsPerUnit;
+
+				/* Rotate the text's up direction, (0, -1) in the image,
+				 * onto the label's. */
+				final float upX = label.up().dot(face.x);
+				final float upY = label.up().dot(face.y);
+				final double angle = Math.atan2(upX, upY);
+
+				final float labelHeightPixels = label.size() * pixelsPerUnit;
+				final Font font = baseFont.deriveFont(
+					baseFont.getSize2D() * labelHeightPixels / baseFontHeight
+				);
+				final FontMetrics metrics = g.getFontMetrics(font);
+
+				final AffineTransform oldTransform = g.getTransform();
+				g.translate(cx, cy);
+				g.rotate(angle);
+				g.setFont(font);
+				g.drawString(
+					label.text(),
+					-metrics.stringWidth(label.text()) / 2f,
+					metrics.getAscent() - metrics.getHeight() / 2f
+				);
+				g.setTransform(oldTransform);
+			}
+		}
+
+		g.dispose();
+
+		return new Texture2D(new AWTLoader().load(image, true));
+	}
+
+	private static int atlasCols(final int nFace) {
+		return (int)Math.ceil(Math.sqrt(nFace));
+	}
+
+	private static int atlasRows(final int nFace) {
+		final int cols = atlasCols(nFace);
+		return (nFace + cols - 1) / cols;
+	}
+
+	private static record InstancedDieType(
+		Geometry prototype,
+		InstancedNode node
+	) {}
+
+	private static record AtlasLabel(
+		String text,
+		/* The BitmapText size. */
+		float size,
+		/* In model space, like the vectors below. */
+		Vector3f position,
+		/* The direction of the top of the text. */
+		Vector3f up
+	) {}
+
+	/* A real face of a die and the labels drawn on it. */
+	private static final class AtlasFace {
+		/* The outward unit normal. */
+		final Vector3f normal;
+		/* The directions of the face's atlas-cell axes. */
+		final Vector3f x, y;
+		/* The mean of the label positions;
+		 * the center of the face's atlas cell. */
+		final Vector3f center;
+		final List<AtlasLabel> labels;
+		/* Half the width of the face's atlas cell, in model space. */
+		float radius;
+
+		AtlasFace(final Vector3f normal, final Vector3f x, final Vector3f y) {
+			this.normal = normal;
+			this.x = x;
+			this.y = y;
+			this.center = new Vector3f();
+			this.labels = new ArrayList<>();
+			this.radius = FastMath.FLT_EPSILON;
+		}
+	}
+}
@@ -11,18 +11,41 @@ import java.awt.Font;
 
 import java.awt.color.ColorSpace;
 
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Path;
+
+import java.time.Instant;
+
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SplittableRandom;
 
 import java.util.function.Function;
 
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
+
 import java.util.stream.IntStream;
 
 import javax.swing.BorderFactory;
@@ -36,12 +59,23 @@ import javax.swing.colorchooser.AbstractColorChooserPanel;
 
 import com.jme3.app.SimpleApplication;
 
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.AssetNotFoundException;
+
 import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.PhysicsSpace;
+import com.jme3.bullet.PhysicsTickListener;
 
+import com.jme3.bullet.collision.shapes.BoxCollisionShape;
 import com.jme3.bullet.collision.shapes.CollisionShape;
+import com.jme3.bullet.collision.shapes.HullCollisionShape;
 
 import com.jme3.bullet.control.RigidBodyControl;
 
+import com.jme3.bullet.objects.PhysicsRigidBody;
+
 import com.jme3.bullet.util.CollisionShapeFactory;
 
 import com.jme3.font.BitmapFont;
@@ -49,11 +83,19 @@ import com.jme3.font.BitmapText;
 
 import com.jme3.input.KeyInput;
 import com.jme3.input.MouseInput;
+import com.jme3.input.RawInputListener;
 
 import com.jme3.input.controls.ActionListener;
 import com.jme3.input.controls.KeyTrigger;
 import com.jme3.input.controls.MouseButtonTrigger;
 
+import com.jme3.input.event.JoyAxisEvent;
+import com.jme3.input.event.JoyButtonEvent;
+import com.jme3.input.event.KeyInputEvent;
+import com.jme3.input.event.MouseButtonEvent;
+import com.jme3.input.event.MouseMotionEvent;
+import com.jme3.input.event.TouchEvent;
+
 import com.jme3.light.AmbientLight;
 import com.jme3.light.DirectionalLight;
 import com.jme3.light.SpotLight;
@@ -74,29 +116,98 @@ import com.jme3.scene.Spatial;
 import com.jme3.scene.shape.Box;
 import com.jme3.scene.shape.Quad;
 
-import com.jme3.shadow.DirectionalLightShadowRenderer;
-import com.jme3.shadow.EdgeFilteringMode;
 import com.jme3.shadow.SpotLightShadowRenderer;
 
 import com.jme3.system.AppSettings;
+import com.jme3.system.JmeContext;
 
 import com.jme3.system.awt.AwtPanelsContext;
 import com.jme3.system.awt.AwtPanel;
 import com.jme3.system.awt.PaintMode;
 
 public class Main extends SimpleApplication {
-	private static final float GROUND_SIZE = 100;
-	private static final float DICE_TRAY_WIDTH = 10;
-	private static final float DICE_TRAY_WALL_HEIGHT = 4;
-	private static final float DICE_TRAY_WALL_THICKNESS = 0.2f;
+	static final float GROUND_SIZE = 100;
+	static final float DICE_TRAY_WIDTH = 10;
+	static final float DICE_TRAY_WALL_HEIGHT = 4;
+	static final float DICE_TRAY_WALL_THICKNESS = 0.2f;
+
+	static final Vector3f[] WALL_POSITIONS = {
+		/* Near wall. */
+		new Vector3f(
+			0, DICE_TRAY_WALL_HEIGHT / 2, DICE_TRAY_WIDTH / 2
+		),
+		/* Far wall. */
+		new Vector3f(
+			0, DICE_TRAY_WALL_HEIGHT / 2, -DICE_TRAY_WIDTH / 2
+		),
+		/* Right wall. */
+		new Vector3f(
+			DICE_TRAY_WIDTH / 2, DICE_TRAY_WALL_HEIGHT / 2, 0
+		),
+		/* Left wall. */
+		new Vector3f(
+			-DICE_TRAY_WIDTH / 2, DICE_TRAY_WALL_HEIGHT / 2, 0
+		),
+	};
+
+	/* Each element: [x, y, z] */
+	static final float[][] WALL_DIMENSIONS = {
+		/* Near wall. */
+		{
+			DICE_TRAY_WIDTH,
+			DICE_TRAY_WALL_HEIGHT,
+			DICE_TRAY_WALL_THICKNESS,
+		},
+		/* Far wall. */
+		{
+			DICE_TRAY_WIDTH,
+			DICE_TRAY_WALL_HEIGHT,
+			DICE_TRAY_WALL_THICKNESS,
+		},
+		/* Right wall. */
+		{
+			DICE_TRAY_WALL_THICKNESS,
+			DICE_TRAY_WALL_HEIGHT,
+			DICE_TRAY_WIDTH,
+		},
+		/* Left wall. */
+		{
+			DICE_TRAY_WALL_THICKNESS,
+			DICE_TRAY_WALL_HEIGHT,
+			DICE_TRAY_WIDTH,
+		},
+	};
 
-	private static final String DICE_GROUP_TYPE_NAME_PREFIX = "D";
 
 	private static final ColorRGBA DIE_COLOR_DEFAULT = ColorRGBA.White;
 
 	private static final int DICE_GROUP_COUNT_MAX = 100;
+	/* How many dice-group roll results the HUD shows at once. */
+	static final int HUD_RESULTS_PER_PAGE = 20;
+	/* Instanced dice cost one draw call per die type
+	 * rather than several per die. */
+	static final int DICE_GROUP_COUNT_MAX_INSTANCED = 2000;
+	/* How many dice a roll may have in all
+	 * (those of dice notation types can have up to 100 dice per group):
+	 * enough for the most dice groups of the two-die D100. */
+	static final int DIE_COUNT_MAX = 2 * DICE_GROUP_COUNT_MAX;
+	static final int DIE_COUNT_MAX_INSTANCED =
+		2 * DICE_GROUP_COUNT_MAX_INSTANCED;
+
+	/* How many times a cocked die is rolled again in one roll. */
+	static final int MAX_COCKED_REROLLS = 5;
 
 	private BulletAppState physics;
+	/* How this.physics is stepped. */
+	private PhysicsProfile physicsProfile;
+	/* How much ground there is around the dice tray. */
+	private TrayMode trayMode;
+	/* The frame time (in milliseconds) that the shadow quality
+	 * is adjusted to hold. */
+	private float frameBudget;
+	private ShadowGovernor shadowGovernor;
+	/* Stops rendering while nothing changes. */
+	private RenderOnDemand renderOnDemand;
 	private BitmapText hud;
 	private CameraView cameraView;
 	private InputMode inputMode;
@@ -104,20 +215,176 @@ public class Main extends SimpleApplication {
 	private StringBuilder inputBuffer;
 	private DiceGroupType[] diceGroupTypes;
 	private Material dieMaterial;
+	private ColorRGBA dieColor;
+	private InstancedDice instancedDice;
+	/* Whether to roll instanced dice rather than clones of the prototypes. */
+	private boolean instancedRendering;
 	private DiceGroupType currentDiceGroupType;
 	/* How many dice groups to roll. */
 	private int diceGroupCount;
-	private List<Node> diceGroups;
+	/* The type of the dice groups currently rolled. */
+	private DiceGroupType rolledDiceGroupType;
+	/* The dice of each dice group. */
+	private List<Spatial[]> diceGroups;
+	/* In the order in which the dice groups settled. */
 	private List<DiceGroupRollResult> diceGroupRollResults;
+	/* Statistics of this.diceGroupRollResults,
+	 * updated as each result is read,
+	 * so the HUD never re-sums the results. */
+	private RollAggregator rollAggregate;
+	/* Which of this.diceGroups have had their results read. */
+	private BitSet readDiceGroups;
+	/* The bodies of all dice in this.diceGroups. */
+	private DieBodyRegistry dieBodies;
 	/* For getting dice-group roll results in simpleUpdate. */
-	private float settleTimer;
+	private SettleDetector settleDetector;
+	/* Scratch space for reading the dice. */
+	private FaceReading faceReading;
+	/* Simulated time (in seconds) since startup,
+	 * and as of the last settle check. */
+	private float simulatedTime;
+	private float settleCheckSimulatedTime;
+	/* Counts what the settle check in simpleUpdate allocates. */
+	private AllocationCounter settleAllocationCounter;
+	/* What the dice collide as. */
+	private CollisionShapeStrategy collisionShapeStrategy;
+	/* Whether the dice of the last roll are instanced. */
+	private boolean rolledInstanced;
+	/* Dice of past rolls, plain and instanced, for reuse. */
+	private DiePool<Spatial> plainDicePool;
+	private DiePool<Spatial> instancedDicePool;
+	/* The transforms of the dice of the last roll, frame by frame,
+	 * until all its dice groups were read. */
+	private TransformRecording recording;
+	/* Whether the dice are being driven by this.recording
+	 * (with physics paused) instead of by physics,
+	 * and how far into the recording (in simulated seconds). */
+	private boolean playingBack;
+	private float playbackTime;
+	/* Scratch space for playback. */
+	private Vector3f playbackLocation;
+	private Quaternion playbackRotation;
+	/* Where every dice-group roll result is recorded. */
+	private RollJournal journal;
+	/* Where this.journal is. */
+	private Path journalPath;
+	/* Simulated time (in seconds) at the last roll. */
+	private float rollSimulatedTime;
+	/* Draws the seed of each roll. */
+	private SplittableRandom seedSource;
+	/* The seed of the last roll,
+	 * and the generator seeded with it
+	 * that the roll (and its re-rolls) draw from. */
+	private long rollSeed;
+	private RandomGenerator rollRandom;
+	/* Rolls the dice that the roll's dice notation rolls again
+	 * (from this.rollRandom too). */
+	private FaceRoller rollFaceRoller;
+	/* Scratch space for evaluating a dice group's roll result. */
+	private int[] rollValues;
+	/* Whether the HUD shows performance metrics. */
+	private boolean showMetrics;
+	/* Which page of this.diceGroupRollResults the HUD shows. */
+	private int resultsPage;
+	/* Whether anything the HUD text depends on has changed
+	 * since it was last built,
+	 * and the camera height it was last laid out for.
+	 * (The metrics and playback lines change every frame,
+	 * so the text is rebuilt every frame while they are shown.) */
+	private boolean hudDirty;
+	private int hudCameraHeight;
+	/* What to do instead of showing the window;
+	 * non-null iff running in headless mode. */
+	private Runnable headlessTask;
+	/* The status to exit the process with once headless mode is done. */
+	private int headlessExitStatus;
+
+	public static void main(final String[] allArgs) {
+		/* Options (--shapes=NAME, --physics=NAME, --tray=NAME,
+		 * --frame-budget=MS, --journal=PATH)
+		 * come before the mode arguments. */
+		CollisionShapeStrategy collisionShapeStrategy =
+			CollisionShapeStrategy.DEFAULT;
+		PhysicsProfile physicsProfile = PhysicsProfile.DEFAULT;
+		TrayMode trayMode = TrayMode.DEFAULT;
+		float frameBudget = ShadowGovernor.DEFAULT_FRAME_BUDGET;
+		Path journalPath = RollJournal.DEFAULT_PATH;
+		int modeArgIdx = 0;
+		for (; modeArgIdx < allArgs.length; ++modeArgIdx) {
+			final String arg = allArgs[modeArgIdx];
+			if (arg.startsWith(CollisionShapeStrategy.ARG_PREFIX)) {
+				collisionShapeStrategy = CollisionShapeStrategy.parse(arg);
+			} else if (arg.startsWith(PhysicsProfile.ARG_PREFIX)) {
+				physicsProfile = PhysicsProfile.parse(arg);
+			} else if (arg.startsWith(TrayMode.ARG_PREFIX)) {
+				trayMode = TrayMode.parse(arg);
+			} else if (arg.startsWith(ShadowGovernor.ARG_PREFIX)) {
+				frameBudget = ShadowGovernor.parseFrameBudget(arg);
+			} else if (arg.startsWith(RollJournal.ARG_PREFIX)) {
+				journalPath = RollJournal.parsePath(arg);
+			} else {
+				break;
+			}
+		}
+		final String[] args =
+			Arrays.copyOfRange(allArgs, modeArgIdx, allArgs.length);
+
+		if (args.length > 0) {
+			final Main app = new Main();
+			app.collisionShapeStrategy = collisionShapeStrategy;
+			app.physicsProfile = physicsProfile;
+			app.trayMode = trayMode;
+			app.journalPath = journalPath;
+			app.headlessTask = switch (args[0]) {
+				case HeadlessBatch.ARG, HeadlessBatch.STATISTICAL_ARG -> {
+					final HeadlessBatch batch = HeadlessBatch.parse(args);
+					yield () -> app.runHeadlessBatch(batch);
+				}
+				case Calibration.ARG -> {
+					final Calibration calibration = Calibration.parse(args);
+					yield () -> app.runCalibration(calibration);
+				}
+				case FairnessCheck.ARG -> {
+					final FairnessCheck check = FairnessCheck.parse(args);
+					yield () -> app.runFairnessCheck(check);
+				}
+				case Replay.ARG -> {
+					final Replay replay = Replay.parse(args);
+					yield () -> app.runReplay(replay);
+				}
+				case RollServerConfig.ARG -> {
+					final RollServerConfig config = RollServerConfig.parse(args);
+					yield () -> app.runRollServer(config);
+				}
+				case OddsQuery.ARG -> {
+					final OddsQuery query = OddsQuery.parse(args);
+					yield () -> app.runOddsQuery(query);
+				}
+				case RollJournal.READ_ARG -> {
+					final Path readPath =
+						args.length > 1 ? Path.of(args[1]) : journalPath;
+					yield () -> app.printJournal(readPath);
+				}
+				default -> throw new IllegalArgumentException(
+					String.format("unknown mode: %s", args[0])
+				);
+			};
+			app.setShowSettings(false);
+			/* No window, no audio, no rendering; just the asset manager. */
+			app.start(JmeContext.Type.Headless);
+			return;
+		}
 
-	public static void main(final String[] args) {
 		final AppSettings settings = new AppSettings(true);
 		/* Use AwtPanelsContext so that jME renders to Swing. */
 		settings.setCustomRenderer(AwtPanelsContext.class);
 
 		final Main app = new Main();
+		app.collisionShapeStrategy = collisionShapeStrategy;
+		app.physicsProfile = physicsProfile;
+		app.trayMode = trayMode;
+		app.frameBudget = frameBudget;
+		app.journalPath = journalPath;
 		app.setSettings(settings);
 		app.setShowSettings(false);
 		/* jME will create an AwtPanelsContext, so no default window. */
@@ -126,8 +393,33 @@ public class Main extends SimpleApplication {
 
 	@Override
 	public void simpleInitApp() {
-		this.physics = new BulletAppState();
+		if (this.headlessTask != null) {
+			this.setupDiceGroupTypes();
+			this.headlessTask.run();
+			this.stop();
+			return;
+		}
+
+		this.physics = this.physicsProfile.createAppState(this.trayMode);
 		this.stateManager.attach(this.physics);
+		this.physicsProfile.tune(this.physics.getPhysicsSpace());
+		this.physics.getPhysicsSpace().addTickListener(
+			new PhysicsTickListener() {
+				@Override
+				public void prePhysicsTick(
+					final PhysicsSpace space,
+					final float timeStep
+				) {}
+
+				@Override
+				public void physicsTick(
+					final PhysicsSpace space,
+					final float timeStep
+				) {
+					Main.this.simulatedTime += timeStep;
+				}
+			}
+		);
 
 		this.setCameraView(CameraView.VERTICAL);
 		this.flyCam.setEnabled(false);
@@ -139,6 +431,26 @@ public class Main extends SimpleApplication {
 		this.diceGroupCount = diceGroupCountDefault;
 		this.diceGroups = new ArrayList<>();
 		this.diceGroupRollResults = new ArrayList<>();
+		this.rollAggregate = new RollAggregator();
+		this.readDiceGroups = new BitSet();
+		this.dieBodies = new DieBodyRegistry();
+		this.settleDetector = new SettleDetector();
+		this.faceReading = new FaceReading();
+		this.seedSource = new SplittableRandom();
+		this.plainDicePool = new DiePool<>();
+		this.instancedDicePool = new DiePool<>();
+		this.playbackLocation = new Vector3f();
+		this.playbackRotation = new Quaternion();
+		this.settleAllocationCounter = new AllocationCounter();
+		this.instancedDice = new InstancedDice(
+			this.assetManager,
+			this.rootNode,
+			this.dieColor
+		);
+		this.journal = this.openJournal();
+
+		this.renderOnDemand =
+			new RenderOnDemand(this.timer, this.viewPort, this.guiViewPort);
 
 		this.setupInput();
 		this.setupLights();
@@ -147,63 +459,595 @@ public class Main extends SimpleApplication {
 		this.setupSwingUi();
 	}
 
+	@Override
+	public void destroy() {
+		if (this.journal != null) {
+			try {
+				this.journal.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		super.destroy();
+
+		/* E.g., a failed fairness check, for scripts to see. */
+		if (this.headlessExitStatus != 0) {
+			System.exit(this.headlessExitStatus);
+		}
+	}
+
 	@Override
 	public void simpleUpdate(final float tpf) {
-		this.simpleUpdateImpl(tpf);
-		this.updateHud();
+		if (this.headlessTask != null) {
+			return;
+		}
+
+		if (this.playingBack) {
+			this.updatePlayback(tpf);
+		} else {
+			this.simpleUpdateImpl(tpf);
+		}
+		final boolean diceMoving = !this.playingBack
+			&& this.readDiceGroups.cardinality() < this.diceGroups.size();
+		/* An idle frame's time is mostly spent waiting. */
+		if (!this.renderOnDemand.isIdle()) {
+			this.shadowGovernor.update(tpf, diceMoving);
+		}
+		final boolean hudChanged = this.updateHud();
+		this.renderOnDemand.update(
+			diceMoving || this.playingBack || hudChanged
+		);
 	}
 
 	private void simpleUpdateImpl(final float tpf) {
-		if (
-			this.diceGroups.isEmpty()
-			|| !this.diceGroupRollResults.isEmpty()
-		) {
+		final int nDiceGroup = this.diceGroups.size();
+		if (this.readDiceGroups.cardinality() == nDiceGroup) {
 			return;
 		}
 
-		float vSum = 0, wSum = 0;
-		for (final Node diceGroup : this.diceGroups) {
-			for (final Spatial die : diceGroup.getChildren()) {
-				final RigidBodyControl dieBody =
-					die.getControl(RigidBodyControl.class);
+		/* Settling is judged on simulated time,
+		 * which lags wall-clock time when frames are slow. */
+		final float dt = this.simulatedTime - this.settleCheckSimulatedTime;
+		this.settleCheckSimulatedTime = this.simulatedTime;
+
+		this.settleAllocationCounter.start();
+		this.settleDetector.rerollEscaped(this.dieBodies, this.rollRandom);
+		this.settleDetector.update(this.dieBodies, dt);
+		this.settleAllocationCounter.stop();
+
+		this.recording.record(
+			this.simulatedTime - this.rollSimulatedTime,
+			this.dieBodies
+		);
+
+		/* The dice of each dice group are consecutive in this.dieBodies;
+		 * read each dice group as soon as all of its dice have settled. */
+		final DieType[] dieTypes = this.rolledDiceGroupType.dieTypes();
+		final int nDie = dieTypes.length;
+		for (
+			int i = this.readDiceGroups.nextClearBit(0);
+			i < nDiceGroup;
+			i = this.readDiceGroups.nextClearBit(i + 1)
+		) {
+			if (!this.settleDetector.isSettled(i * nDie, (i + 1) * nDie)) {
+				continue;
+			}
+
+			final DieFace[] faces = new DieFace[nDie];
+			if (
+				!readDiceGroup(
+					this.dieBodies,
+					this.settleDetector,
+					i * nDie,
+					dieTypes,
+					true,
+					this.rollRandom,
+					this.faceReading,
+					faces
+				)
+			) {
+				continue;
+			}
+
+			final DiceGroupRollResult rollResult =
+				this.rolledDiceGroupType.rollResult(
+					faces,
+					this.rollValues,
+					this.rollFaceRoller
+				);
+			this.diceGroupRollResults.add(rollResult);
+			this.rollAggregate.add(dieTypes, faces, rollResult);
+			this.hudDirty = true;
+			this.readDiceGroups.set(i);
+
+			if (this.journal != null) {
+				this.journal(
+					this.rolledDiceGroupType,
+					new DiceGroupRoll(
+						faces,
+						rollResult,
+						this.simulatedTime - this.rollSimulatedTime
+					),
+					this.rollSeed
+				);
+			}
+		}
+
+		if (this.readDiceGroups.cardinality() == nDiceGroup) {
+			this.settleDetector.freezeAll(this.dieBodies);
+		}
+	}
+
+	/* The roll journal at this.journalPath, opened for appending,
+	 * or null, having said why on the console, if it cannot be:
+	 * rolling matters more than auditing the rolls. */
+	private RollJournal openJournal() {
+		try {
+			return RollJournal.open(this.journalPath, this.diceGroupTypes);
+		} catch (IOException e) {
+			System.err.printf(
+				"not journaling rolls: cannot open %s: %s%n",
+				this.journalPath,
+				e.getMessage()
+			);
+			return null;
+		}
+	}
+
+	/* Append a dice group's roll, part of the roll with the given seed,
+	 * to this.journal (which must not be null);
+	 * if that fails, say why and stop journaling,
+	 * as when the journal cannot be opened. */
+	private void journal(
+		final DiceGroupType diceGroupType,
+		final DiceGroupRoll diceGroupRoll,
+		final long seed
+	) {
+		try {
+			this.journal.append(
+				diceGroupType,
+				diceGroupRoll.faces(),
+				diceGroupRoll.result(),
+				seed,
+				System.currentTimeMillis(),
+				diceGroupRoll.settleTime()
+			);
+		} catch (IOException e) {
+			System.err.printf("stopped journaling rolls: %s%n", e.getMessage());
+			try {
+				this.journal.close();
+			} catch (IOException closeException) {}
+			this.journal = null;
+		}
+	}
+
+	/* Roll a batch, journaling every dice group's roll
+	 * (on this thread, as the rolls come in). */
+	private void runHeadlessBatch(final HeadlessBatch batch) {
+		/* A built-in type's name, or any dice notation. */
+		final DiceGroupType diceGroupType =
+			DiceNotation.compile(batch.diceGroupTypeName(), this.diceGroupTypes);
+		/* Closed in destroy(). */
+		this.journal = this.openJournal();
+
+		final PrintWriter out = new PrintWriter(
+			new BufferedWriter(new OutputStreamWriter(System.out))
+		);
 
-				vSum += vectorLengthApprox(dieBody.getLinearVelocity());
-				wSum += vectorLengthApprox(dieBody.getAngularVelocity());
+		if (batch.statistical()) {
+			final StatisticalRoller roller;
+			try {
+				roller = new StatisticalRoller(
+					FaceDistributions.load(FaceDistributions.DEFAULT_PATH),
+					batch.seed()
+				);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			final RollAggregator aggregator = new RollAggregator();
+			final long startNanos = System.nanoTime();
+			for (int i = 0; i < batch.rollCount(); ++i) {
+				roller.roll(
+					diceGroupType,
+					batch.diceGroupCount(),
+					aggregator,
+					diceGroupRoll -> {
+						out.println(diceGroupRoll.result().displayValue());
+						/* Statistical rolls have no seed of their own
+						 * (the batch's is printed with its summary). */
+						if (this.journal != null) {
+							this.journal(diceGroupType, diceGroupRoll, 0);
+						}
+					}
+				);
 			}
+			final double elapsedSecs =
+				(System.nanoTime() - startNanos) / 1e9;
+
+			out.flush();
+
+			System.err.printf(
+				"%d statistical rolls of %s x %d (seed %d) in %.3f s (%.1f rolls/s)%n",
+				batch.rollCount(),
+				diceGroupType.name(),
+				batch.diceGroupCount(),
+				batch.seed(),
+				elapsedSecs,
+				batch.rollCount() / elapsedSecs
+			);
+			System.err.println(aggregator.describe());
+			return;
 		}
 
-		final float vwSumCutoff = 0.1f;
-		if (vSum >= vwSumCutoff || wSum >= vwSumCutoff) {
-			this.settleTimer = 0;
+		final long startNanos = System.nanoTime();
+		float simulatedTime = 0;
+		long rerollCount = 0;
+		RollAggregator aggregate = null;
+		try (
+			final RollFarm farm =
+				new RollFarm(batch.workerCount(), this.collisionShapeStrategy)
+		) {
+			simulatedTime = farm.rollBatch(
+				diceGroupType,
+				batch.diceGroupCount(),
+				batch.rollCount(),
+				batch.seed(),
+				(seed, diceGroupRoll) -> {
+					out.println(diceGroupRoll.result().displayValue());
+					if (this.journal != null) {
+						this.journal(diceGroupType, diceGroupRoll, seed);
+					}
+				}
+			);
+			rerollCount = farm.rerollCount();
+			aggregate = farm.aggregate();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			return;
 		}
+		final double elapsedSecs = (System.nanoTime() - startNanos) / 1e9;
+
+		out.flush();
+
+		System.err.printf(
+			"%d rolls of %s x %d (seed %d) on %d workers with %s shapes in %.3f s (%.1f rolls/s, %.1f simulated s, %d cocked-die re-rolls)%n",
+			batch.rollCount(),
+			diceGroupType.name(),
+			batch.diceGroupCount(),
+			batch.seed(),
+			batch.workerCount(),
+			this.collisionShapeStrategy.displayName(),
+			elapsedSecs,
+			batch.rollCount() / elapsedSecs,
+			simulatedTime,
+			rerollCount
+		);
+		System.err.println(aggregate.describe());
+	}
+
+	/* Replay a single roll, bit for bit, from its seed,
+	 * printing its dice-group roll results as a batch would. */
+	private void runReplay(final Replay replay) {
+		/* A built-in type's name, or any dice notation. */
+		final DiceGroupType diceGroupType =
+			DiceNotation.compile(replay.diceGroupTypeName(), this.diceGroupTypes);
+
+		final HeadlessRoller roller =
+			new HeadlessRoller(this.collisionShapeStrategy);
+		final RollAggregator aggregator = new RollAggregator();
+		final float simulatedTime = roller.roll(
+			diceGroupType,
+			replay.diceGroupCount(),
+			replay.seed(),
+			aggregator,
+			diceGroupRoll ->
+				System.out.println(diceGroupRoll.result().displayValue())
+		);
+		roller.destroy();
+
+		System.err.printf(
+			"%s x %d (seed %d) settled in %.3f simulated s (%d cocked-die re-rolls)%n",
+			diceGroupType.name(),
+			replay.diceGroupCount(),
+			replay.seed(),
+			simulatedTime,
+			roller.lastRerollCount()
+		);
+		System.err.println(aggregator.describe());
+	}
+
+	/* Serve rolls to local clients until the process is killed. */
+	private void runRollServer(final RollServerConfig config) {
+		/* Closed in destroy(), once the server is. */
+		this.journal = this.openJournal();
+		try (
+			final RollServer server = new RollServer(
+				config.port(),
+				config.workerCount(),
+				this.collisionShapeStrategy,
+				this.diceGroupTypes,
+				this.journal
+			)
+		) {
+			System.err.printf(
+				"serving rolls on %s with %d workers and %s shapes%n",
+				server.address(),
+				server.workerCount(),
+				this.collisionShapeStrategy.displayName()
+			);
+			server.serve();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
-		final float settleTimerCutoff = 1;
-		this.settleTimer = Math.min(
-			this.settleTimer + tpf,
-			settleTimerCutoff
+	/* Print the exact odds of a roll:
+	 * the probability of at least the query's total,
+	 * or of each possible total (with that of at least it). */
+	private void runOddsQuery(final OddsQuery query) {
+		final DiceGroupType diceGroupType =
+			DiceNotation.compile(query.diceGroupTypeName(), this.diceGroupTypes);
+
+		/* A one-off question, so nothing is cached for another;
+		 * the roll server keeps its Odds for all its ODDS requests. */
+		final long startNanos = System.nanoTime();
+		final Distribution distribution =
+			new Odds().distribution(diceGroupType, query.diceGroupCount());
+		final double elapsedMillis = (System.nanoTime() - startNanos) / 1e6;
+
+		final PrintWriter out = new PrintWriter(
+			new BufferedWriter(new OutputStreamWriter(System.out))
 		);
-		if (this.settleTimer < settleTimerCutoff) {
+		if (query.total().isPresent()) {
+			final int total = query.total().getAsInt();
+			out.printf(
+				"P(total >= %d) = %.6g%n",
+				total,
+				distribution.atLeast(total)
+			);
+		} else {
+			for (int x = distribution.min(); x <= distribution.max(); ++x) {
+				out.printf(
+					"%d %.6g %.6g%n",
+					x,
+					distribution.probability(x),
+					distribution.atLeast(x)
+				);
+			}
+		}
+		out.flush();
+
+		System.err.printf(
+			"%s x %d: mean %.3f (sd %.3f), %d to %d, computed in %.3f ms%n",
+			diceGroupType.name(),
+			query.diceGroupCount(),
+			distribution.mean(),
+			distribution.standardDeviation(),
+			distribution.min(),
+			distribution.max(),
+			elapsedMillis
+		);
+	}
+
+	/* Print every roll in the roll journal at path, one per line,
+	 * with the dice-group roll result rebuilt from the faces
+	 * (for a dice notation type, whose rerolls and explosions
+	 * are not journaled, the one recorded)
+	 * and the faces. */
+	private void printJournal(final Path path) {
+		final Map<String, DiceGroupType> typesByName = new HashMap<>();
+		for (final DiceGroupType type : this.diceGroupTypes) {
+			typesByName.put(type.name(), type);
+		}
+		final int builtInTypeCount = this.diceGroupTypes.length;
+
+		final PrintWriter out = new PrintWriter(
+			new BufferedWriter(new OutputStreamWriter(System.out))
+		);
+		try (final RollJournal.Reader reader = RollJournal.Reader.open(path)) {
+			while (reader.next()) {
+				final DiceGroupType type = typesByName.computeIfAbsent(
+					reader.diceGroupTypeName(),
+					name -> DiceNotation.compile(name, this.diceGroupTypes)
+				);
+				final DieType[] dieTypes = type.dieTypes();
+				final DieFace[] faces = new DieFace[reader.dieCount()];
+				final int[] values = new int[faces.length];
+				final StringBuilder faceList = new StringBuilder();
+				for (int j = 0; j < faces.length; ++j) {
+					faces[j] = dieTypes[j].faces()[reader.faceIdx(j)];
+					faceList.append(j > 0 ? "," : "")
+						.append(faces[j].displayValue());
+				}
+
+				out.printf(
+					"%s %s %s seed=%d settle=%.3fs faces=%s%n",
+					Instant.ofEpochMilli(reader.timestampMillis()),
+					type.name(),
+					reader.diceGroupTypeIdx() < builtInTypeCount
+						? type.rollResult(faces, values, FaceRoller.NONE)
+							.displayValue()
+						: type.displayValueFn().apply(reader.numericValue()),
+					reader.seed(),
+					reader.settleTime(),
+					faceList
+				);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		out.flush();
+	}
+
+	/* Physically roll each die type, alone, calibration.rollCount() times,
+	 * and save how often each of its faces came up. */
+	private void runCalibration(final Calibration calibration) {
+		final DieType[] dieTypes = this.builtInDieTypes();
+
+		final Map<String, FaceDistribution> distributions = new HashMap<>();
+		final SplittableRandom seeds = new SplittableRandom();
+		try (
+			final RollFarm farm = new RollFarm(
+				calibration.workerCount(),
+				this.collisionShapeStrategy
+			)
+		) {
+			for (final DieType dieType : dieTypes) {
+				final long startNanos = System.nanoTime();
+				farm.rollBatch(
+					DiceGroupType.singleDie(dieType.name(), dieType),
+					1,
+					calibration.rollCount(),
+					seeds.nextLong(),
+					(seed, diceGroupRoll) -> {}
+				);
+				final double elapsedSecs =
+					(System.nanoTime() - startNanos) / 1e9;
+				/* The farm aggregates the faces of each die type apart. */
+				final long[] counts = farm.aggregate().faceCounts(dieType);
+
+				/* Pearson's chi-squared statistic against a fair die,
+				 * to compare how fair the collision shapes roll;
+				 * with n faces, a fair die averages n - 1. */
+				final FaceFairness fairness = new FaceFairness(dieType, counts);
+
+				distributions.put(dieType.name(), new FaceDistribution(counts));
+				System.err.printf(
+					"%s (%s shapes): %s in %.3f s, chi-squared %.2f (%d degrees of freedom, p = %.3g)%n",
+					dieType.name(),
+					this.collisionShapeStrategy.displayName(),
+					Arrays.toString(counts),
+					elapsedSecs,
+					fairness.chiSquared(),
+					fairness.degreesOfFreedom(),
+					fairness.chiSquaredPValue()
+				);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			return;
 		}
 
-		for (final Node diceGroup : this.diceGroups) {
-			final List<Spatial> dice = diceGroup.getChildren();
-			final DieType[] dieTypes = this.currentDiceGroupType.dieTypes();
+		try {
+			FaceDistributions.save(
+				FaceDistributions.DEFAULT_PATH,
+				distributions
+			);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
-			final DieFace[] faces = new DieFace[dice.size()];
-			final Iterator<Spatial> diceIter = dice.iterator();
-			for (int i = 0; i < faces.length; ++i) {
-				final Spatial die = diceIter.next();
-				faces[i] = readDieFace(die, dieTypes[i]);
+	/* Physically roll each die type, alone, check.rollCount() times,
+	 * test its face counts against a fair die's
+	 * and print, per die type, the tests and each face's bias,
+	 * and whether all die types passed.
+	 * The significance is split evenly over the die types and tests,
+	 * so that fair dice fail the check as a whole
+	 * with probability FairnessCheck.SIGNIFICANCE at most. */
+	private void runFairnessCheck(final FairnessCheck check) {
+		final DieType[] dieTypes = this.builtInDieTypes();
+		final double significance =
+			FairnessCheck.SIGNIFICANCE / (2 * dieTypes.length);
+
+		final PrintWriter out = new PrintWriter(
+			new BufferedWriter(new OutputStreamWriter(System.out))
+		);
+		final List<String> unfairDieTypeNames = new ArrayList<>();
+		final SplittableRandom seeds = new SplittableRandom(check.seed());
+		final long startNanos = System.nanoTime();
+		try (
+			final RollFarm farm = new RollFarm(
+				check.workerCount(),
+				this.collisionShapeStrategy
+			)
+		) {
+			for (final DieType dieType : dieTypes) {
+				final long dieTypeStartNanos = System.nanoTime();
+				final long rerollCountBefore = farm.rerollCount();
+				final float simulatedTime = farm.rollBatch(
+					DiceGroupType.singleDie(dieType.name(), dieType),
+					1,
+					check.rollCount(),
+					seeds.nextLong(),
+					(seed, diceGroupRoll) -> {}
+				);
+				final double elapsedSecs =
+					(System.nanoTime() - dieTypeStartNanos) / 1e9;
+				/* The farm aggregates the faces of each die type apart. */
+				final FaceFairness fairness = new FaceFairness(
+					dieType,
+					farm.aggregate().faceCounts(dieType)
+				);
+				final boolean fair = fairness.isFair(significance);
+				if (!fair) {
+					unfairDieTypeNames.add(dieType.name());
+				}
+
+				out.printf(
+					"%s (%s shapes): %d rolls in %.3f s (%.1f rolls/s, %.1f simulated s, %d cocked-die re-rolls)%n",
+					dieType.name(),
+					this.collisionShapeStrategy.displayName(),
+					fairness.rollCount(),
+					elapsedSecs,
+					fairness.rollCount() / elapsedSecs,
+					simulatedTime,
+					farm.rerollCount() - rerollCountBefore
+				);
+				out.printf(
+					"chi-squared %.2f (%d degrees of freedom, p = %.3g), KS %.5f (p = %.3g): %s%n",
+					fairness.chiSquared(),
+					fairness.degreesOfFreedom(),
+					fairness.chiSquaredPValue(),
+					fairness.ksStatistic(),
+					fairness.ksPValue(),
+					fair ? "fair" : "UNFAIR"
+				);
+				out.println(fairness.describeFaces(FairnessCheck.CONFIDENCE));
+				out.flush();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		final double elapsedSecs = (System.nanoTime() - startNanos) / 1e9;
+
+		out.printf(
+			"%s at significance %s (seed %d, %.0f%% face intervals): %s%n",
+			unfairDieTypeNames.isEmpty() ? "PASS" : "FAIL",
+			FairnessCheck.SIGNIFICANCE,
+			check.seed(),
+			FairnessCheck.CONFIDENCE * 100,
+			unfairDieTypeNames.isEmpty()
+				? "all die types fair"
+				: String.join(", ", unfairDieTypeNames) + " unfair"
+		);
+		out.flush();
+
+		System.err.printf(
+			"%d rolls of %d die types on %d workers in %.3f s (%.1f rolls/s)%n",
+			(long)check.rollCount() * dieTypes.length,
+			dieTypes.length,
+			check.workerCount(),
+			elapsedSecs,
+			(double)check.rollCount() * dieTypes.length / elapsedSecs
+		);
 
-			final DiceGroupRollResult rollResult =
-				this.currentDiceGroupType.getRollResultFn().apply(faces);
-			this.diceGroupRollResults.add(rollResult);
+		if (!unfairDieTypeNames.isEmpty()) {
+			this.headlessExitStatus = 1;
 		}
 	}
 
+	/* Every die type used by a built-in dice-group type, once. */
+	private DieType[] builtInDieTypes() {
+		return Arrays.stream(this.diceGroupTypes)
+			.flatMap(type -> Arrays.stream(type.dieTypes()))
+			.distinct()
+			.toArray(DieType[]::new);
+	}
+
 	private void setupInput() {
 		this.inputMode = InputMode.OFF;
 		this.inputErrorStatus = InputErrorStatus.OK;
@@ -216,22 +1060,21 @@ public class Main extends SimpleApplication {
 		final String setDiceGroupCountActionName = "SET_DICE_GROUP_COUNT";
 		final String confirmInputActionName = "CONFIRM_INPUT";
 		final String cancelInputActionName = "CANCEL_INPUT";
+		final String toggleInstancingActionName = "TOGGLE_INSTANCING";
+		final String toggleMetricsActionName = "TOGGLE_METRICS";
+		final String cycleCollisionShapesActionName = "CYCLE_COLLISION_SHAPES";
+		final String toggleRollingShadowsActionName = "TOGGLE_ROLLING_SHADOWS";
+		final String pageResultsBackActionName = "PAGE_RESULTS_BACK";
+		final String pageResultsForwardActionName = "PAGE_RESULTS_FORWARD";
+		final String togglePlaybackActionName = "TOGGLE_PLAYBACK";
+		final String scrubBackActionName = "SCRUB_BACK";
+		final String scrubForwardActionName = "SCRUB_FORWARD";
+		/* How far (in simulated seconds) scrubbing moves playback. */
+		final float scrubStep = 0.5f;
 
 		/* Digit-action names are of the form "DIGIT"d,
 		 * where d is a decimal digit. */
 		final String digitActionNamePrefix = "DIGIT";
-		/* Ideally,
-		 * we would test for when the regular "5" key is pressed
-		 * together with either "shift" key,
-		 * but,
-		 * for simplicity,
-		 * we unconditionally interpret
-		 * both the regular and number-pad "5" key
-		 * as "%"
-		 * when setting the dice-group type,
-		 * which should not cause any problems
-		 * since no dice-group type has "5" in its name. */
-		final String percentDigitActionNameAffix = "5";
 
 		final ActionListener actionListener = new ActionListener() {
 			@Override
@@ -246,56 +1089,87 @@ public class Main extends SimpleApplication {
 					main.inputMode = InputMode.OFF;
 					main.inputBuffer.setLength(0);
 				};
+				/* After a change that lowers the maximum. */
+				final Runnable clampDiceGroupCount = () -> {
+					if (main.diceGroupCount > main.diceGroupCountMax()) {
+						main.diceGroupCount = main.diceGroupCountMax();
+						main.inputErrorStatus =
+							InputErrorStatus.TOO_BIG_DICE_GROUP_COUNT;
+					}
+				};
 
 				if (isPressed) {
 					return;
 				}
 
 				main.inputErrorStatus = InputErrorStatus.OK;
+				/* Every action shows on the HUD, one way or another. */
+				main.hudDirty = true;
 
 				switch (main.inputMode) {
 					case InputMode.OFF -> {
 						if (name.equals(rollDiceActionName)) {
-							main.clearDice();
-							for (int i = 0; i < main.diceGroupCount; ++i) {
-								main.createAndRollDiceGroup();
+							main.rollDice();
+						} else if (name.equals(toggleMetricsActionName)) {
+							main.showMetrics = !main.showMetrics;
+						} else if (
+							name.equals(cycleCollisionShapesActionName)
+						) {
+							/* Takes effect from the next roll. */
+							main.collisionShapeStrategy =
+								main.collisionShapeStrategy.next();
+						} else if (name.equals(pageResultsBackActionName)) {
+							main.resultsPage = Math.max(main.resultsPage - 1, 0);
+						} else if (name.equals(pageResultsForwardActionName)) {
+							final int pageCount =
+								(main.diceGroupRollResults.size()
+									+ HUD_RESULTS_PER_PAGE - 1)
+								/ HUD_RESULTS_PER_PAGE;
+							main.resultsPage = Math.min(
+								main.resultsPage + 1,
+								Math.max(pageCount - 1, 0)
+							);
+						} else if (
+							name.equals(toggleRollingShadowsActionName)
+						) {
+							main.shadowGovernor.setDropWhileMoving(
+								!main.shadowGovernor.dropWhileMoving()
+							);
+						} else if (name.equals(togglePlaybackActionName)) {
+							if (main.playingBack) {
+								main.stopPlayback();
+							} else {
+								main.startPlayback();
 							}
+						} else if (name.equals(scrubBackActionName)) {
+							main.scrubPlayback(-scrubStep);
+						} else if (name.equals(scrubForwardActionName)) {
+							main.scrubPlayback(scrubStep);
+						} else if (name.equals(toggleInstancingActionName)) {
+							main.instancedRendering = !main.instancedRendering;
+							clampDiceGroupCount.run();
 						} else if (name.equals(cycleCameraViewActionName)) {
 							main.setCameraView(main.cameraView.next());
 						} else if (name.equals(setDiceGroupTypeActionName)) {
 							main.inputMode = InputMode.DICE_GROUP_TYPE;
-							main.inputBuffer.append(DICE_GROUP_TYPE_NAME_PREFIX);
 						} else if (name.equals(setDiceGroupCountActionName)) {
 							main.inputMode = InputMode.DICE_GROUP_COUNT;
 						}
 					}
+					/* The notation itself is typed in through rawInputListener. */
 					case InputMode.DICE_GROUP_TYPE -> {
-						if (name.startsWith(digitActionNamePrefix)) {
-							/* DIGIT# -> #. */
-							String ch = name.substring(
-								digitActionNamePrefix.length()
-							);
-							if (ch.equals(percentDigitActionNameAffix)) {
-								ch = "%";
-							}
-
-							main.inputBuffer.append(ch);
-						} else if (name.equals(confirmInputActionName)) {
-							final String diceGroupTypeName =
-								main.inputBuffer.toString();
-
-							Arrays.stream(main.diceGroupTypes)
-								.filter(
-									type -> diceGroupTypeName.equals(
-										type.name()
-									)
-								)
-								.findFirst()
-								.ifPresentOrElse(
-									type -> main.currentDiceGroupType = type,
-									() -> main.inputErrorStatus =
-										InputErrorStatus.INVALID_DICE_GROUP_TYPE
+						if (name.equals(confirmInputActionName)) {
+							try {
+								main.currentDiceGroupType = DiceNotation.compile(
+									main.inputBuffer.toString(),
+									main.diceGroupTypes
 								);
+								/* A type with more dice allows fewer groups. */
+								clampDiceGroupCount.run();
+							} catch (IllegalArgumentException e) {
+								main.inputErrorStatus =
+									InputErrorStatus.INVALID_DICE_GROUP_TYPE;
+							}
 
 							resetInputModeAndBuffer.run();
 						} else if (name.equals(cancelInputActionName)) {
@@ -327,10 +1201,10 @@ public class Main extends SimpleApplication {
 										main.diceGroupCount =
 											Math.min(
 												count,
-												DICE_GROUP_COUNT_MAX
+												main.diceGroupCountMax()
 											);
 
-										if (count > DICE_GROUP_COUNT_MAX) {
+										if (count > main.diceGroupCountMax()) {
 											main.inputErrorStatus =
 												InputErrorStatus.TOO_BIG_DICE_GROUP_COUNT;
 										}
@@ -355,6 +1229,15 @@ public class Main extends SimpleApplication {
 			setDiceGroupCountActionName,
 			confirmInputActionName,
 			cancelInputActionName,
+			toggleInstancingActionName,
+			toggleMetricsActionName,
+			cycleCollisionShapesActionName,
+			toggleRollingShadowsActionName,
+			pageResultsBackActionName,
+			pageResultsForwardActionName,
+			togglePlaybackActionName,
+			scrubBackActionName,
+			scrubForwardActionName,
 		};
 		final int[] generalActionKeyCodes = {
 			KeyInput.KEY_SPACE,
@@ -363,6 +1246,15 @@ public class Main extends SimpleApplication {
 			KeyInput.KEY_N,
 			KeyInput.KEY_RETURN,
 			KeyInput.KEY_ESCAPE,
+			KeyInput.KEY_I,
+			KeyInput.KEY_M,
+			KeyInput.KEY_H,
+			KeyInput.KEY_G,
+			KeyInput.KEY_PGUP,
+			KeyInput.KEY_PGDN,
+			KeyInput.KEY_P,
+			KeyInput.KEY_LEFT,
+			KeyInput.KEY_RIGHT,
 		};
 
 		for (int i = 0; i < generalActions.length; ++i) {
@@ -397,15 +1289,70 @@ public class Main extends SimpleApplication {
 			this.inputManager.addMapping(digitAction, triggers);
 			this.inputManager.addListener(actionListener, digitAction);
 		}
+
+		/* Dice notation is typed in character by character,
+		 * which key mappings cannot do
+		 * (e.g., they cannot tell "5" from "%"). */
+		final int notationLengthMax = 64;
+		final RawInputListener rawInputListener = new RawInputListener() {
+			@Override
+			public void onKeyEvent(final KeyInputEvent evt) {
+				final Main main = Main.this;
+				if (
+					main.inputMode != InputMode.DICE_GROUP_TYPE
+					|| !evt.isPressed()
+				) {
+					return;
+				}
+
+				final char ch = evt.getKeyChar();
+				if (evt.getKeyCode() == KeyInput.KEY_BACK) {
+					main.inputBuffer.setLength(
+						Math.max(main.inputBuffer.length() - 1, 0)
+					);
+				} else if (
+					ch != 0
+					&& !Character.isISOControl(ch)
+					&& main.inputBuffer.length() < notationLengthMax
+				) {
+					main.inputBuffer.append(ch);
+				} else {
+					return;
+				}
+				main.hudDirty = true;
+			}
+
+			@Override
+			public void beginInput() {}
+
+			@Override
+			public void endInput() {}
+
+			@Override
+			public void onJoyAxisEvent(final JoyAxisEvent evt) {}
+
+			@Override
+			public void onJoyButtonEvent(final JoyButtonEvent evt) {}
+
+			@Override
+			public void onMouseMotionEvent(final MouseMotionEvent evt) {}
+
+			@Override
+			public void onMouseButtonEvent(final MouseButtonEvent evt) {}
+
+			@Override
+			public void onTouchEvent(final TouchEvent evt) {}
+		};
+		this.inputManager.addRawInputListener(rawInputListener);
 	}
 
-	private static enum InputMode {
+	static enum InputMode {
 		OFF,
 		DICE_GROUP_TYPE,
 		DICE_GROUP_COUNT;
 	}
 
-	private static enum InputErrorStatus {
+	static enum InputErrorStatus {
 		OK,
 		INVALID_DICE_GROUP_TYPE,
 		INVALID_DICE_GROUP_COUNT,
@@ -427,23 +1374,29 @@ public class Main extends SimpleApplication {
 		amb.setColor(ambientLightColor);
 		this.rootNode.addLight(amb);
 
-		final int dlsrShadowMapSize = 2048;
-		final int dlsrSplitCount = 4;
-		final EdgeFilteringMode dlsrEdgeFilteringMode =
-			EdgeFilteringMode.PCFPOISSON;
 		final float dlsrShadowIntensity = 0.4f;
 
-		final DirectionalLightShadowRenderer dlsr =
-			new DirectionalLightShadowRenderer(
-				this.assetManager,
-				dlsrShadowMapSize,
-				dlsrSplitCount
-			);
-		dlsr.setLight(sunlight);
-		dlsr.setEdgeFilteringMode(dlsrEdgeFilteringMode);
-		dlsr.setShadowIntensity(dlsrShadowIntensity);
-		dlsr.setEnabledStabilization(true);
-		this.viewPort.addProcessor(dlsr);
+		/* 0 casts shadows out to the camera's far plane. */
+		float dlsrShadowZExtend = 0;
+		if (this.trayMode == TrayMode.COMPACT) {
+			/* Cast shadows only as far as the far side of the tray
+			 * is from the farthest camera view. */
+			for (final CameraView view : CameraView.values()) {
+				dlsrShadowZExtend =
+					Math.max(dlsrShadowZExtend, view.position().length());
+			}
+			dlsrShadowZExtend += DICE_TRAY_WIDTH;
+		}
+
+		/* Creates the shadow renderer, at the best quality to begin with. */
+		this.shadowGovernor = new ShadowGovernor(
+			this.assetManager,
+			this.viewPort,
+			sunlight,
+			dlsrShadowIntensity,
+			dlsrShadowZExtend,
+			this.frameBudget
+		);
 	}
 
 	private void setupDiceTray() {
@@ -466,13 +1419,14 @@ public class Main extends SimpleApplication {
 		groundMat.setColor("Specular", groundSpecularColor);
 		groundMat.setFloat("Shininess", groundShininess);
 
+		final float groundSize = this.trayMode.groundSize();
 		final Geometry ground = new Geometry(
 			"ground",
-			new Quad(GROUND_SIZE, GROUND_SIZE),
+			new Quad(groundSize, groundSize),
 			groundMat
 		);
 		ground.rotate(-FastMath.HALF_PI, 0, 0);
-		ground.setLocalTranslation(-GROUND_SIZE / 2, 0, GROUND_SIZE / 2);
+		ground.setLocalTranslation(-groundSize / 2, 0, groundSize / 2);
 		ground.setShadowMode(RenderQueue.ShadowMode.Receive);
 
 		this.rootNode.attachChild(ground);
@@ -497,56 +1451,9 @@ public class Main extends SimpleApplication {
 		wallMat.setTransparent(true);
 		wallMat.setFloat("Shininess", wallShininess);
 
-		final Vector3f[] wallPositions = {
-			/* Near wall. */
-			new Vector3f(
-				0, DICE_TRAY_WALL_HEIGHT / 2, DICE_TRAY_WIDTH / 2
-			),
-			/* Far wall. */
-			new Vector3f(
-				0, DICE_TRAY_WALL_HEIGHT / 2, -DICE_TRAY_WIDTH / 2
-			),
-			/* Right wall. */
-			new Vector3f(
-				DICE_TRAY_WIDTH / 2, DICE_TRAY_WALL_HEIGHT / 2, 0
-			),
-			/* Left wall. */
-			new Vector3f(
-				-DICE_TRAY_WIDTH / 2, DICE_TRAY_WALL_HEIGHT / 2, 0
-			),
-		};
-
-		/* Each element: [x, y, z] */
-		final float[][] wallDimensions = {
-			/* Near wall. */
-			{
-				DICE_TRAY_WIDTH,
-				DICE_TRAY_WALL_HEIGHT,
-				DICE_TRAY_WALL_THICKNESS,
-			},
-			/* Far wall. */
-			{
-				DICE_TRAY_WIDTH,
-				DICE_TRAY_WALL_HEIGHT,
-				DICE_TRAY_WALL_THICKNESS,
-			},
-			/* Right wall. */
-			{
-				DICE_TRAY_WALL_THICKNESS,
-				DICE_TRAY_WALL_HEIGHT,
-				DICE_TRAY_WIDTH,
-			},
-			/* Left wall. */
-			{
-				DICE_TRAY_WALL_THICKNESS,
-				DICE_TRAY_WALL_HEIGHT,
-				DICE_TRAY_WIDTH,
-			},
-		};
-
-		for (int i = 0; i < wallPositions.length; ++i) {
-			final Vector3f position = wallPositions[i];
-			final float[] wallDim = wallDimensions[i];
+		for (int i = 0; i < WALL_POSITIONS.length; ++i) {
+			final Vector3f position = WALL_POSITIONS[i];
+			final float[] wallDim = WALL_DIMENSIONS[i];
 			final float xSize = wallDim[0];
 			final float ySize = wallDim[1];
 			final float zSize = wallDim[2];
@@ -591,66 +1498,211 @@ public class Main extends SimpleApplication {
 		this.hud.setColor(hudTextColor);
 
 		this.guiNode.attachChild(this.hud);
+		this.hudDirty = true;
 		this.updateHud();
 	}
 
-	private void updateHud() {
+	/* Update the HUD, and return whether it changed.
+	 * An unchanged HUD is left alone,
+	 * as setting its size or text lays the text out again. */
+	private boolean updateHud() {
+		final int cameraHeight = this.cam.getHeight();
+		if (
+			!this.hudDirty
+			&& !this.showMetrics
+			&& !this.playingBack
+			&& cameraHeight == this.hudCameraHeight
+		) {
+			return false;
+		}
+		this.hudDirty = false;
+		this.hudCameraHeight = cameraHeight;
+
 		final float hudTextSizeScaleCoeff = 0.001f;
-		final float scale = this.cam.getHeight() * hudTextSizeScaleCoeff;
+		final float scale = cameraHeight * hudTextSizeScaleCoeff;
 		final float hudTextSizeBase = 24;
-		this.hud.setSize(hudTextSizeBase * scale);
+		final float hudTextSize = hudTextSizeBase * scale;
+		boolean changed = false;
+		if (this.hud.getSize() != hudTextSize) {
+			this.hud.setSize(hudTextSize);
+			changed = true;
+		}
+
+		String metrics = "";
+		if (this.showMetrics) {
+			final long settleAllocatedBytes =
+				this.settleAllocationCounter.lastCount();
+			final long poolHits = this.plainDicePool.hitCount()
+				+ this.instancedDicePool.hitCount();
+			final long poolRequests = poolHits
+				+ this.plainDicePool.missCount()
+				+ this.instancedDicePool.missCount();
+			metrics = String.format(
+				"Physics: %s profile, %s tray, %.1f ms/frame (budget %.1f ms)%nShadows: %s%s%nIdle frames: %d%nSettle-check allocation: %s%nCocked-die re-rolls: %d%nEscaped-die re-rolls: %d%nDie pool: %d/%d hits (%s)%n",
+				this.physicsProfile.displayName(),
+				this.trayMode.displayName(),
+				1000 * this.timer.getTimePerFrame(),
+				this.frameBudget,
+				this.shadowGovernor.describe(),
+				this.shadowGovernor.dropWhileMoving()
+					? " (off while rolling, G=keep)"
+					: " (G=off while rolling)",
+				this.renderOnDemand.idleFrameCount(),
+				settleAllocatedBytes < 0
+					? "n/a"
+					: String.format("%d B/frame", settleAllocatedBytes),
+				this.settleDetector.rerollCount(),
+				this.settleDetector.escapeCount(),
+				poolHits,
+				poolRequests,
+				poolRequests == 0
+					? "n/a"
+					: String.format("%.1f%%", 100.0 * poolHits / poolRequests)
+			);
+		}
+
+		final String hudText = buildHudText(
+			new HudState(
+				this.inputMode,
+				this.inputErrorStatus,
+				this.inputBuffer.toString(),
+				this.currentDiceGroupType,
+				this.diceGroupCount,
+				this.diceGroupCountMax(),
+				this.instancedRendering,
+				this.collisionShapeStrategy,
+				this.diceGroupRollResults,
+				this.rollAggregate,
+				this.resultsPage,
+				metrics,
+				this.playingBack
+					? String.format(
+						"Replay: %.2f / %.2f s (LEFT/RIGHT=scrub, P=stop)%n",
+						this.playbackTime,
+						this.recording.duration()
+					)
+					: ""
+			)
+		);
+
+		final Vector3f hudPosition = this.computeHudPosition();
+		if (!hudPosition.equals(this.hud.getLocalTranslation())) {
+			this.hud.setLocalTranslation(hudPosition);
+			changed = true;
+		}
+		if (!hudText.equals(this.hud.getText())) {
+			this.hud.setText(hudText);
+			changed = true;
+		}
+
+		return changed;
+	}
+
+	/* Everything that the HUD text depends on. */
+	static record HudState(
+		InputMode inputMode,
+		InputErrorStatus inputErrorStatus,
+		String inputBuffer,
+		DiceGroupType diceGroupType,
+		int diceGroupCount,
+		int diceGroupCountMax,
+		boolean instancedRendering,
+		CollisionShapeStrategy collisionShapeStrategy,
+		List<DiceGroupRollResult> diceGroupRollResults,
+		/* Statistics of diceGroupRollResults. */
+		RollAggregator rollAggregate,
+		/* Clamped to the last page. */
+		int resultsPage,
+		/* Preformatted; empty if the metrics are hidden. */
+		String metrics,
+		/* Preformatted; empty unless playing a roll back. */
+		String playback
+	) {}
 
-		String pre = switch (this.inputMode) {
-			case InputMode.OFF -> switch (this.inputErrorStatus) {
+	static String buildHudText(final HudState state) {
+		String pre = switch (state.inputMode()) {
+			case InputMode.OFF -> switch (state.inputErrorStatus()) {
 				case InputErrorStatus.OK -> "";
 				case InputErrorStatus.INVALID_DICE_GROUP_TYPE ->
-					"Invalid dice-group type; keeping previous";
+					"Invalid dice notation; keeping previous";
 				case InputErrorStatus.INVALID_DICE_GROUP_COUNT ->
 					"Invalid dice-group count; keeping previous";
 				case InputErrorStatus.TOO_BIG_DICE_GROUP_COUNT ->
 					String.format(
 						"Max dice-group count is %d! Using %d",
-						DICE_GROUP_COUNT_MAX, this.diceGroupCount
+						state.diceGroupCountMax(), state.diceGroupCount()
 					);
 			};
 			case InputMode.DICE_GROUP_TYPE ->
-				String.format("Enter dice-group type (ESC=cancel): %s", this.inputBuffer);
+				String.format("Enter dice, e.g. D20, 4d6kh3+2 or 3d20 adv (ESC=cancel): %s", state.inputBuffer());
 			case InputMode.DICE_GROUP_COUNT ->
-				String.format("Enter dice-group count (ESC=cancel): %s", this.inputBuffer);
+				String.format("Enter dice-group count (ESC=cancel): %s", state.inputBuffer());
 		};
 		if (!pre.isEmpty()) {
 			pre += System.lineSeparator() + System.lineSeparator();
 		}
 
+		/* Only a page of the results is shown,
+		 * so that many dice groups do not make one huge text mesh;
+		 * the summary (aggregated as the results came in) covers them all. */
 		String middle = "";
-		if (!this.diceGroupRollResults.isEmpty()) {
-			final int rollTotal = this.diceGroupRollResults.stream()
-				.mapToInt(DiceGroupRollResult::numericValue)
-				.sum();
-
-			middle = this.diceGroupRollResults.stream()
-				.map(DiceGroupRollResult::displayValue)
-				.collect(
-					Collectors.joining(
-						" ",
-						"Rolled: ",
-						String.format("%nTotal: %d%n", rollTotal)
+		final List<DiceGroupRollResult> results = state.diceGroupRollResults();
+		final RollAggregator aggregate = state.rollAggregate();
+		if (!results.isEmpty()) {
+			final int pageCount = (results.size() + HUD_RESULTS_PER_PAGE - 1)
+				/ HUD_RESULTS_PER_PAGE;
+			final int page = Math.clamp(state.resultsPage(), 0, pageCount - 1);
+			final int from = page * HUD_RESULTS_PER_PAGE;
+			final int to =
+				Math.min(from + HUD_RESULTS_PER_PAGE, results.size());
+
+			final StringBuilder sb = new StringBuilder("Rolled");
+			if (pageCount > 1) {
+				sb.append(
+					String.format(
+						" (%d-%d of %d, PGUP/PGDN=page)",
+						from + 1,
+						to,
+						results.size()
 					)
 				);
+			}
+			sb.append(':');
+			for (int i = from; i < to; ++i) {
+				sb.append(' ').append(results.get(i).displayValue());
+			}
+			sb.append(System.lineSeparator());
+			sb.append(String.format("Total: %d", aggregate.sum()));
+			if (aggregate.count() > 1) {
+				sb.append(
+					String.format(
+						"  Min: %d  Max: %d  Mean: %.2f  SD: %.2f",
+						aggregate.min(),
+						aggregate.max(),
+						aggregate.mean(),
+						aggregate.standardDeviation()
+					)
+				);
+			}
+			sb.append(System.lineSeparator());
+			middle = sb.toString();
 		}
 
 		final String controlsSep = "  ";
 		final String hudText = String.format(
-			"%sCurrent Dice Group: %s x %d%n%sSPACE=roll%sT=type%<sN=count%<sC=camera",
+			"%sCurrent Dice Group: %s x %d%s, %s shapes%n%s%s%sSPACE=roll%sT=type%<sN=count%<sC=camera%<sI=instancing%<sH=shapes%<sM=metrics%<sP=replay",
 			pre,
-			this.currentDiceGroupType.name(),
-			this.diceGroupCount,
+			state.diceGroupType().name(),
+			state.diceGroupCount(),
+			state.instancedRendering() ? " (instanced)" : "",
+			state.collisionShapeStrategy().displayName(),
 			middle,
+			state.metrics(),
+			state.playback(),
 			controlsSep
 		);
 
-		this.hud.setLocalTranslation(this.computeHudPosition());
-		this.hud.setText(hudText);
+		return hudText;
 	}
 
 	private Vector3f computeHudPosition() {
@@ -668,6 +1720,45 @@ public class Main extends SimpleApplication {
 		awtPanel.attachTo(true, this.viewPort);
 		awtPanel.attachTo(false, this.guiViewPort);
 
+		/* jME only reads the panel's input on the render thread,
+		 * which blocks while rendering is idle,
+		 * so input (and resizing) wakes it up first. */
+		final RenderOnDemand renderOnDemand = this.renderOnDemand;
+		awtPanel.addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyPressed(final KeyEvent evt) {
+				renderOnDemand.wake();
+			}
+
+			@Override
+			public void keyReleased(final KeyEvent evt) {
+				renderOnDemand.wake();
+			}
+		});
+		awtPanel.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(final MouseEvent evt) {
+				renderOnDemand.wake();
+			}
+
+			@Override
+			public void mouseReleased(final MouseEvent evt) {
+				renderOnDemand.wake();
+			}
+		});
+		awtPanel.addMouseWheelListener(evt -> renderOnDemand.wake());
+		awtPanel.addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(final ComponentEvent evt) {
+				renderOnDemand.wake();
+			}
+
+			@Override
+			public void componentShown(final ComponentEvent evt) {
+				renderOnDemand.wake();
+			}
+		});
+
 		SwingUtilities.invokeLater(() -> {
 			final String windowTitle = "Dice-Rolling Simulator";
 			final JFrame frame = new JFrame(windowTitle);
@@ -739,6 +1830,7 @@ public class Main extends SimpleApplication {
 				final ColorRGBA jmeColor = colorAwtToJme(awtColor);
 
 				this.enqueue(() -> this.setDieColor(jmeColor));
+				this.renderOnDemand.wake();
 			});
 
 			final JPanel colorChooserPanel = new JPanel(new BorderLayout());
@@ -786,23 +1878,57 @@ public class Main extends SimpleApplication {
 	}
 
 	private void clearDice() {
-		for (final Node diceGroup : this.diceGroups) {
-			for (final Spatial die : diceGroup.getChildren()) {
-				final RigidBodyControl dieBody =
-					die.getControl(RigidBodyControl.class);
-				this.physics.getPhysicsSpace().remove(dieBody);
-			}
+		for (int i = 0; i < this.dieBodies.size(); ++i) {
+			this.physics.getPhysicsSpace().remove(this.dieBodies.get(i));
+		}
 
-			this.rootNode.detachChild(diceGroup);
+		/* Keep the dice, bodies and all, for the next rolls. */
+		final DiePool<Spatial> pool = this.rolledInstanced
+			? this.instancedDicePool
+			: this.plainDicePool;
+		for (final Spatial[] dice : this.diceGroups) {
+			for (int j = 0; j < dice.length; ++j) {
+				dice[j].removeFromParent();
+				pool.release(this.rolledDiceGroupType.dieTypes()[j], dice[j]);
+			}
 		}
 
 		this.diceGroups.clear();
+		this.dieBodies.clear();
 		this.diceGroupRollResults.clear();
-		this.settleTimer = 0;
+		this.rollAggregate.reset();
+		this.resultsPage = 0;
+		this.hudDirty = true;
+		this.readDiceGroups.clear();
+		this.settleDetector.reset();
 	}
 
-	@SuppressWarnings("unchecked")
 	private void setupDiceGroupTypes() {
+		dieMaterial = new Material(
+			assetManager,
+			"Common/MatDefs/Light/Lighting.j3md"
+		);
+		dieMaterial.setBoolean("UseMaterialColors", true);
+		this.setDieColor(DIE_COLOR_DEFAULT);
+
+		this.diceGroupTypes =
+			createDiceGroupTypes(assetManager, dieMaterial);
+
+		final String diceGroupTypeDefaultName = "D6";
+		this.currentDiceGroupType = Arrays.stream(this.diceGroupTypes)
+			.filter(type -> diceGroupTypeDefaultName.equals(type.name()))
+			.findFirst()
+			.orElseThrow();
+	}
+
+	/* Build the die types (models, collision shapes and labels)
+	 * and the dice-group types made of them.
+	 * Needs no running application, just an asset manager. */
+	@SuppressWarnings("unchecked")
+	static DiceGroupType[] createDiceGroupTypes(
+		final AssetManager assetManager,
+		final Material dieMaterial
+	) {
 		final int nDieType = 7;
 
 		final int d4TypeIdx = 0;
@@ -1467,15 +2593,8 @@ public class Main extends SimpleApplication {
 			faceCentroidPairArrays[d20TypeIdx][0].first().normal();
 
 		final Spatial[] models = new Spatial[nDieType];
-		final CollisionShape[] collisionShapes =
-			new CollisionShape[nDieType];
-
-		this.dieMaterial = new Material(
-			this.assetManager,
-			"Common/MatDefs/Light/Lighting.j3md"
-		);
-		this.dieMaterial.setBoolean("UseMaterialColors", true);
-		this.setDieColor(DIE_COLOR_DEFAULT);
+		final Map<CollisionShapeStrategy, CollisionShape>[] collisionShapes =
+			(Map<CollisionShapeStrategy, CollisionShape>[])new Map[nDieType];
 
 		for (int i = 0; i < nDieType; ++i) {
 			/* D% uses the same model and collision shape as D10. */
@@ -1486,26 +2605,37 @@ public class Main extends SimpleApplication {
 			final String name = typeNames[i];
 			final String modelPath =
 				String.format("Models/Dice/%s.obj", name);
-			final Spatial model = this.assetManager.loadModel(modelPath);
+			final Spatial model = assetManager.loadModel(modelPath);
 
-			model.setMaterial(this.dieMaterial);
+			model.setMaterial(dieMaterial);
 
 			final RenderQueue.ShadowMode dieShadowMode =
 				RenderQueue.ShadowMode.CastAndReceive;
 			model.setShadowMode(dieShadowMode);
 
-			final CollisionShape collisionShape =
-				CollisionShapeFactory.createDynamicMeshShape(model);
+			final Map<CollisionShapeStrategy, CollisionShape> shapes =
+				new EnumMap<>(CollisionShapeStrategy.class);
+			shapes.put(
+				CollisionShapeStrategy.MESH,
+				CollisionShapeFactory.createDynamicMeshShape(model)
+			);
+			shapes.put(
+				CollisionShapeStrategy.HULL,
+				/* The D6's corners are at (+-sqrt(1/3), +-sqrt(1/3), +-sqrt(1/3)). */
+				i == d6TypeIdx
+					? new BoxCollisionShape(sqrtOf1Div3)
+					: createHullShape(assetManager, modelPath)
+			);
 
 			models[i] = model;
-			collisionShapes[i] = collisionShape;
+			collisionShapes[i] = shapes;
 		}
 		models[dPercentTypeIdx] = models[d10TypeIdx].clone();
-				models[dPercentTypeIdx].setMaterial(this.dieMaterial);
+		models[dPercentTypeIdx].setMaterial(dieMaterial);
 		collisionShapes[dPercentTypeIdx] = collisionShapes[d10TypeIdx];
 
 		final BitmapFont dieLabelFont =
-			this.assetManager.loadFont("Interface/Fonts/Default.fnt");
+			assetManager.loadFont("Interface/Fonts/Default.fnt");
 		final ColorRGBA dieLabelColor = ColorRGBA.Black;
 
 		/* If the dice has both, say 6 and 9,
@@ -1529,7 +2659,9 @@ public class Main extends SimpleApplication {
 
 			final float dieScale = 0.5f;
 			prototype.scale(dieScale);
-			collisionShapes[i].setScale(dieScale);
+			for (final CollisionShape shape : collisionShapes[i].values()) {
+				shape.setScale(dieScale);
+			}
 
 			prototype.attachChild(model);
 
@@ -1673,14 +2805,21 @@ public class Main extends SimpleApplication {
 
 		final DieType[] dieTypes = IntStream.range(0, nDieType)
 			.mapToObj(
-				i -> new DieType(
-					typeNames[i],
-					prototypes[i],
-					collisionShapes[i],
-					Arrays.stream(faceCentroidPairArrays[i])
-						.map(Pair::first)
-						.toArray(DieFace[]::new)
-				)
+				i -> {
+					final DieFace[] faces =
+						Arrays.stream(faceCentroidPairArrays[i])
+							.map(Pair::first)
+							.toArray(DieFace[]::new);
+
+					return new DieType(
+						typeNames[i],
+						prototypes[i],
+						collisionShapes[i],
+						faces,
+						new FaceLookup(faces),
+						FaceLookup.cockedConfidence(faces)
+					);
+				}
 			)
 			.toArray(DieType[]::new);
 
@@ -1695,177 +2834,459 @@ public class Main extends SimpleApplication {
 		final int d20GroupTypeIdx = 6;
 		final int d100GroupTypeIdx = 7;
 
-		final Function<DieFace[], DiceGroupRollResult> identityRollResult =
-			faces -> {
-				final DieFace face = faces[0];
-				return new DiceGroupRollResult(
-					face.displayValue(),
-					face.numericValue()
-				);
-			};
-
-		this.diceGroupTypes = new DiceGroupType[nDiceGroupType];
-		this.diceGroupTypes[d4GroupTypeIdx] = new DiceGroupType(
-			"D4",
-			new DieType[] { dieTypes[d4TypeIdx] },
-			identityRollResult
-		);
-		this.diceGroupTypes[d6GroupTypeIdx] = new DiceGroupType(
-			"D6",
-			new DieType[] { dieTypes[d6TypeIdx] },
-			identityRollResult
-		);
-		this.diceGroupTypes[d8GroupTypeIdx] = new DiceGroupType(
-			"D8",
-			new DieType[] { dieTypes[d8TypeIdx] },
-			identityRollResult
-		);
-		this.diceGroupTypes[d10GroupTypeIdx] = new DiceGroupType(
-			"D10",
-			new DieType[] { dieTypes[d10TypeIdx] },
-			identityRollResult
-		);
-		this.diceGroupTypes[dPercentGroupTypeIdx] =
-			new DiceGroupType(
-				"D%",
-				new DieType[] { dieTypes[dPercentGroupTypeIdx] },
-				identityRollResult
-			);
-		this.diceGroupTypes[d12GroupTypeIdx] = new DiceGroupType(
-			"D12",
-			new DieType[] { dieTypes[d12TypeIdx] },
-			identityRollResult
-		);
-		this.diceGroupTypes[d20GroupTypeIdx] = new DiceGroupType(
-			"D20",
-			new DieType[] { dieTypes[d20TypeIdx] },
-			identityRollResult
-		);
-		this.diceGroupTypes[d100GroupTypeIdx] = new DiceGroupType(
+		final DiceGroupType[] diceGroupTypes =
+			new DiceGroupType[nDiceGroupType];
+		diceGroupTypes[d4GroupTypeIdx] =
+			DiceGroupType.singleDie("D4", dieTypes[d4TypeIdx]);
+		diceGroupTypes[d6GroupTypeIdx] =
+			DiceGroupType.singleDie("D6", dieTypes[d6TypeIdx]);
+		diceGroupTypes[d8GroupTypeIdx] =
+			DiceGroupType.singleDie("D8", dieTypes[d8TypeIdx]);
+		diceGroupTypes[d10GroupTypeIdx] =
+			DiceGroupType.singleDie("D10", dieTypes[d10TypeIdx]);
+		diceGroupTypes[dPercentGroupTypeIdx] =
+			DiceGroupType.singleDie("D%", dieTypes[dPercentTypeIdx]);
+		diceGroupTypes[d12GroupTypeIdx] =
+			DiceGroupType.singleDie("D12", dieTypes[d12TypeIdx]);
+		diceGroupTypes[d20GroupTypeIdx] =
+			DiceGroupType.singleDie("D20", dieTypes[d20TypeIdx]);
+		final DieType[] d100DieTypes =
+			{ dieTypes[d10TypeIdx], dieTypes[dPercentTypeIdx] };
+		/* The D10's "0" (10) and the D%'s "00" (100) count as 0,
+		 * and both together as 100. */
+		final RollEvaluator d100Evaluator = (values, offset, faceRoller) -> {
+			final int d10Nv = values[offset];
+			final int dPercentNv = values[offset + 1];
+
+			final int nv = d10Nv % 10 + dPercentNv % 100;
+			return nv == 0 ? 100 : nv;
+		};
+		diceGroupTypes[d100GroupTypeIdx] = new DiceGroupType(
 			"D100",
-			new DieType[] { dieTypes[d10TypeIdx], dieTypes[dPercentTypeIdx] },
-			faces -> {
-				final DieFace d10Face = faces[0], dPercentFace = faces[1];
-
-				final String d10Dv = d10Face.displayValue();
-				final String dPercentDv = dPercentFace.displayValue();
+			d100DieTypes,
+			d100Evaluator,
+			/* The D%'s tens digit and the D10's units digit,
+			 * so 100 shows as "00". */
+			nv -> nv == 100 ? "00" : String.format("%02d", nv),
+			/* All 100 combinations of the two dice. */
+			() -> Distribution.enumerate(d100DieTypes, d100Evaluator)
+		);
 
-				final String dv =
-					dPercentDv.substring(
-						0,
-						dPercentDv.length() - d10Dv.length()
-					) + d10Dv;
+		return diceGroupTypes;
+	}
 
-				final int d10Nv = d10Face.numericValue();
-				final int dPercentNv = dPercentFace.numericValue();
+	/* The convex hull of the vertices ("v" lines)
+	 * of the OBJ model at modelPath.
+	 * Bullet pads a hull with its collision margin,
+	 * which rounds the die's edges and corners,
+	 * so the margin is kept small next to the die. */
+	private static CollisionShape createHullShape(
+		final AssetManager assetManager,
+		final String modelPath
+	) {
+		final AssetInfo info =
+			assetManager.locateAsset(new AssetKey<>(modelPath));
+		if (info == null) {
+			throw new AssetNotFoundException(modelPath);
+		}
 
-				int nv = d10Nv % 10 + dPercentNv % 100;
-				if (nv == 0) {
-					nv = 100;
+		final List<Vector3f> vertices = new ArrayList<>();
+		try (
+			final BufferedReader in = new BufferedReader(
+				new InputStreamReader(info.openStream(), StandardCharsets.UTF_8)
+			)
+		) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (!line.startsWith("v ")) {
+					continue;
 				}
 
-				return new DiceGroupRollResult(dv, nv);
+				final String[] fields = line.trim().split("\\s+");
+				vertices.add(
+					new Vector3f(
+						Float.parseFloat(fields[1]),
+						Float.parseFloat(fields[2]),
+						Float.parseFloat(fields[3])
+					)
+				);
 			}
-		);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		final float hullMargin = 0.01f;
+		final HullCollisionShape hull = new HullCollisionShape(vertices);
+		hull.setMargin(hullMargin);
 
-		this.currentDiceGroupType = this.diceGroupTypes[d6GroupTypeIdx];
+		return hull;
 	}
 
 	private void setDieColor(final ColorRGBA color) {
+		this.dieColor = color;
 		this.dieMaterial.setColor("Ambient", color);
 		this.dieMaterial.setColor("Diffuse", color);
+		/* Plain dice's models share this.dieMaterial
+		 * (their labels have materials of their own),
+		 * so those on the table and in the pool change color with it. */
+		if (this.instancedDice != null) {
+			this.instancedDice.setDieColor(color);
+		}
 	}
 
-	private void createAndRollDiceGroup() {
-		final DieType[] dieTypes = this.currentDiceGroupType.dieTypes();
+	/* Watch the last roll again from its start,
+	 * driving the dice from the recording with physics paused. */
+	private void startPlayback() {
+		if (
+			this.playingBack
+			|| this.recording == null
+			|| this.recording.frameCount() == 0
+		) {
+			return;
+		}
 
-		final Node diceGroup = new Node(this.currentDiceGroupType.name());
-		this.rootNode.attachChild(diceGroup);
-		this.diceGroups.add(diceGroup);
+		this.physics.setEnabled(false);
+		this.setDiceControlsEnabled(false);
+		this.playingBack = true;
+		this.playbackTime = 0;
+	}
 
-		for (final DieType dieType : dieTypes) {
-			/* Create the die. */
-			final Spatial die = dieType.prototype().clone();
-			diceGroup.attachChild(die);
+	/* Put the dice back where physics has them and resume physics. */
+	private void stopPlayback() {
+		if (!this.playingBack) {
+			return;
+		}
 
-			final RigidBodyControl dieBody =
-				new RigidBodyControl(dieType.collisionShape());
-			die.addControl(dieBody);
-			this.physics.getPhysicsSpace().add(dieBody);
+		/* Settled dice are kinematic,
+		 * and their controls would move their bodies to their spatials
+		 * rather than the other way round. */
+		int dieIdx = 0;
+		for (final Spatial[] dice : this.diceGroups) {
+			for (final Spatial die : dice) {
+				final PhysicsRigidBody dieBody = this.dieBodies.get(dieIdx++);
+				die.setLocalTranslation(
+					dieBody.getPhysicsLocation(this.playbackLocation)
+				);
+				die.setLocalRotation(
+					dieBody.getPhysicsRotation(this.playbackRotation)
+				);
+			}
+		}
 
-			/* Roll the die,
-			 * by applying a linear and angular impulse to it. */
-
-			/* Randomize the die's initial position and rotation
-			 * and the impulses applied to the die,
-			 * to ensure randomness for the roll. */
-			final float positionXzAbsMax = DICE_TRAY_WIDTH / 4;
-			final float positionY = DICE_TRAY_WALL_HEIGHT / 4;
-			final Vector3f position = new Vector3f(
-				fastRandomFloatClosed(-positionXzAbsMax, positionXzAbsMax),
-				positionY,
-				fastRandomFloatClosed(-positionXzAbsMax, positionXzAbsMax)
-			);
+		this.setDiceControlsEnabled(true);
+		this.physics.setEnabled(true);
+		this.playingBack = false;
+	}
+
+	private void scrubPlayback(final float dt) {
+		if (!this.playingBack) {
+			return;
+		}
+
+		this.playbackTime = FastMath.clamp(
+			this.playbackTime + dt,
+			0,
+			this.recording.duration()
+		);
+	}
+
+	/* Advance playback by tpf, stopping at the end of the recording,
+	 * and move the dice to the frame played. */
+	private void updatePlayback(final float tpf) {
+		this.playbackTime =
+			Math.min(this.playbackTime + tpf, this.recording.duration());
+		this.recording.seek(this.recording.frameAt(this.playbackTime));
+
+		int dieIdx = 0;
+		for (final Spatial[] dice : this.diceGroups) {
+			for (final Spatial die : dice) {
+				this.recording.transform(
+					dieIdx++,
+					this.playbackLocation,
+					this.playbackRotation
+				);
+				die.setLocalTranslation(this.playbackLocation);
+				die.setLocalRotation(this.playbackRotation);
+			}
+		}
+	}
 
-			final Quaternion rotation = new Quaternion(
-				/* Tait-Bryan angles. */
-				new float[] {
-					/* Bank: [0, 2 * pi). */
-					fastRandomFloat(0, FastMath.TWO_PI),
-					/* Heading: [0, 2 * pi). */
-					fastRandomFloat(0, FastMath.TWO_PI),
-					/* Elevation: [0, pi). */
-					fastRandomFloat(0, FastMath.PI),
+	/* Disabling a die's control takes its body out of the physics space,
+	 * so the control stops moving the die. */
+	private void setDiceControlsEnabled(final boolean enabled) {
+		for (final Spatial[] dice : this.diceGroups) {
+			for (final Spatial die : dice) {
+				die.getControl(RigidBodyControl.class).setEnabled(enabled);
+			}
+		}
+	}
+
+	/* The most dice groups of the current type that can be rolled at once,
+	 * bounded both per group and per die. */
+	private int diceGroupCountMax() {
+		final int dieCount = this.currentDiceGroupType.dieTypes().length;
+		return this.instancedRendering
+			? Math.min(
+				DICE_GROUP_COUNT_MAX_INSTANCED,
+				DIE_COUNT_MAX_INSTANCED / dieCount
+			)
+			: Math.min(DICE_GROUP_COUNT_MAX, DIE_COUNT_MAX / dieCount);
+	}
+
+	private void rollDice() {
+		this.stopPlayback();
+		this.clearDice();
+		this.rollSimulatedTime = this.simulatedTime;
+		this.rolledDiceGroupType = this.currentDiceGroupType;
+		this.rolledInstanced = this.instancedRendering;
+		this.rollSeed = this.seedSource.nextLong();
+		this.rollRandom = new SplittableRandom(this.rollSeed);
+		this.rollFaceRoller = FaceRoller.uniform(this.rollRandom);
+		this.rollValues = new int[this.rolledDiceGroupType.dieTypes().length];
+		for (int i = 0; i < this.diceGroupCount; ++i) {
+			this.createAndRollDiceGroup(this.rollRandom);
+		}
+		this.recording = new TransformRecording(this.dieBodies.size());
+
+		if (this.instancedRendering) {
+			this.instancedDice.instance();
+		}
+	}
+
+	private void createAndRollDiceGroup(final RandomGenerator random) {
+		final DieType[] dieTypes = this.rolledDiceGroupType.dieTypes();
+
+		final Spatial[] dice = new Spatial[dieTypes.length];
+		this.diceGroups.add(dice);
+
+		for (int i = 0; i < dieTypes.length; ++i) {
+			final DieType dieType = dieTypes[i];
+
+			/* Reuse a pooled die if there is one; otherwise create it. */
+			final DiePool<Spatial> pool = this.rolledInstanced
+				? this.instancedDicePool
+				: this.plainDicePool;
+			Spatial die = pool.acquire(dieType);
+			final RigidBodyControl dieBody;
+			if (die != null) {
+				if (this.rolledInstanced) {
+					this.instancedDice.attachDie(dieType, die);
+				} else {
+					this.rootNode.attachChild(die);
 				}
-			);
 
-			final float linearImpulseXzAbsMax = 1;
-			final float linearImpulseY = 6;
-			final Vector3f linearImpulse = new Vector3f(
-				fastRandomFloatClosed(
-					-linearImpulseXzAbsMax,
-					linearImpulseXzAbsMax
-				),
-				linearImpulseY,
-				fastRandomFloatClosed(
-					-linearImpulseXzAbsMax,
-					linearImpulseXzAbsMax
-				)
-			);
+				/* The body was frozen once the roll was read,
+				 * and the collision shapes may have been switched since. */
+				dieBody = die.getControl(RigidBodyControl.class);
+				final CollisionShape collisionShape =
+					dieType.collisionShape(this.collisionShapeStrategy);
+				if (dieBody.getCollisionShape() != collisionShape) {
+					dieBody.setCollisionShape(collisionShape);
+				}
+				dieBody.setKinematic(false);
+				dieBody.setLinearVelocity(Vector3f.ZERO);
+				dieBody.setAngularVelocity(Vector3f.ZERO);
+				dieBody.clearForces();
+				/* It may also have been put to sleep. */
+				dieBody.activate();
+			} else {
+				if (this.rolledInstanced) {
+					die = this.instancedDice.createDie(dieType);
+				} else {
+					die = dieType.prototype().clone();
+					/* Cloning copies the model's material;
+					 * share the original instead,
+					 * so that setDieColor recolors every plain die,
+					 * including those that go back to the pool.
+					 * Only the model's (its first child):
+					 * the labels keep their font's. */
+					((Node)die).getChild(0).setMaterial(this.dieMaterial);
+					this.rootNode.attachChild(die);
+				}
 
-			final float angularImpulseXyzAbsMax = 1;
-			final Vector3f angularImpulse = new Vector3f(
-				fastRandomFloatClosed(
-					-angularImpulseXyzAbsMax,
-					angularImpulseXyzAbsMax
-				),
-				fastRandomFloatClosed(
-					-angularImpulseXyzAbsMax,
-					angularImpulseXyzAbsMax
-				),
-				fastRandomFloatClosed(
-					-angularImpulseXyzAbsMax,
-					angularImpulseXyzAbsMax
-				)
-			);
+				dieBody = new RigidBodyControl(
+					dieType.collisionShape(this.collisionShapeStrategy)
+				);
+				die.addControl(dieBody);
+			}
+			dice[i] = die;
 
-			dieBody.setPhysicsLocation(position);
-			dieBody.setPhysicsRotation(rotation);
+			this.physics.getPhysicsSpace().add(dieBody);
+			this.dieBodies.add(dieBody);
 
-			dieBody.applyImpulse(linearImpulse, Vector3f.ZERO);
-			dieBody.applyTorqueImpulse(angularImpulse);
+			rollDie(dieBody, random);
 		}
 	}
 
-	private static float vectorLengthApprox(final Vector3f v) {
+	/* Roll the die,
+	 * by applying a linear and angular impulse to it,
+	 * all drawn from random.
+	 * The die's body must already be in a physics space. */
+	static void rollDie(
+		final PhysicsRigidBody dieBody,
+		final RandomGenerator random
+	) {
+		/* Randomize the die's initial position and rotation
+		 * and the impulses applied to the die,
+		 * to ensure randomness for the roll. */
+		final float positionXzAbsMax = DICE_TRAY_WIDTH / 4;
+		final float positionY = DICE_TRAY_WALL_HEIGHT / 4;
+		final Vector3f position = new Vector3f(
+			fastRandomFloatClosed(random, -positionXzAbsMax, positionXzAbsMax),
+			positionY,
+			fastRandomFloatClosed(random, -positionXzAbsMax, positionXzAbsMax)
+		);
+
+		final Quaternion rotation = new Quaternion(
+			/* Tait-Bryan angles. */
+			new float[] {
+				/* Bank: [0, 2 * pi). */
+				fastRandomFloat(random, 0, FastMath.TWO_PI),
+				/* Heading: [0, 2 * pi). */
+				fastRandomFloat(random, 0, FastMath.TWO_PI),
+				/* Elevation: [0, pi). */
+				fastRandomFloat(random, 0, FastMath.PI),
+			}
+		);
+
+		final float linearImpulseXzAbsMax = 1;
+		final float linearImpulseY = 6;
+		final Vector3f linearImpulse = new Vector3f(
+			fastRandomFloatClosed(
+				random,
+				-linearImpulseXzAbsMax,
+				linearImpulseXzAbsMax
+			),
+			linearImpulseY,
+			fastRandomFloatClosed(
+				random,
+				-linearImpulseXzAbsMax,
+				linearImpulseXzAbsMax
+			)
+		);
+
+		final float angularImpulseXyzAbsMax = 1;
+		final Vector3f angularImpulse = new Vector3f(
+			fastRandomFloatClosed(
+				random,
+				-angularImpulseXyzAbsMax,
+				angularImpulseXyzAbsMax
+			),
+			fastRandomFloatClosed(
+				random,
+				-angularImpulseXyzAbsMax,
+				angularImpulseXyzAbsMax
+			),
+			fastRandomFloatClosed(
+				random,
+				-angularImpulseXyzAbsMax,
+				angularImpulseXyzAbsMax
+			)
+		);
+
+		dieBody.setPhysicsLocation(position);
+		dieBody.setPhysicsRotation(rotation);
+
+		dieBody.applyImpulse(linearImpulse, Vector3f.ZERO);
+		dieBody.applyTorqueImpulse(angularImpulse);
+	}
+
+	static float vectorLengthApprox(final Vector3f v) {
 		return Math.abs(v.getX())
 			+ Math.abs(v.getY())
 			+ Math.abs(v.getZ());
 	}
 
-	private static DieFace readDieFace(
-		final Spatial die,
-		final DieType dieType
+	/* Read the faces of the dice group whose dice are
+	 * dieBodies[firstDieIdx, firstDieIdx + dieTypes.length)
+	 * into faces and return true;
+	 * unless, with rerollCocked, some of those dice have settled cocked,
+	 * in which case roll just those dice again (drawing from random)
+	 * and return false.
+	 * A die that keeps settling cocked
+	 * is read as it lies after MAX_COCKED_REROLLS re-rolls. */
+	static boolean readDiceGroup(
+		final DieBodyRegistry dieBodies,
+		final SettleDetector settleDetector,
+		final int firstDieIdx,
+		final DieType[] dieTypes,
+		final boolean rerollCocked,
+		final RandomGenerator random,
+		final FaceReading reading,
+		final DieFace[] faces
+	) {
+		boolean cocked = false;
+		for (int j = 0; j < dieTypes.length; ++j) {
+			final int dieIdx = firstDieIdx + j;
+			final PhysicsRigidBody dieBody = dieBodies.get(dieIdx);
+			faces[j] = readDieFace(dieBody, dieTypes[j], reading);
+
+			if (
+				rerollCocked
+				&& reading.confidence < dieTypes[j].cockedConfidence()
+				&& settleDetector.rerollCount(dieIdx) < MAX_COCKED_REROLLS
+			) {
+				settleDetector.reroll(dieBody, dieIdx, random);
+				cocked = true;
+			}
+		}
+
+		return !cocked;
+	}
+
+	/* Give a die that has settled (cocked) where it lies
+	 * a new, random, mostly upward kick. */
+	static void kickDie(
+		final PhysicsRigidBody dieBody,
+		final RandomGenerator random
+	) {
+		final float linearImpulseXzAbsMax = 1;
+		final float linearImpulseY = 3;
+		final Vector3f linearImpulse = new Vector3f(
+			fastRandomFloatClosed(
+				random,
+				-linearImpulseXzAbsMax,
+				linearImpulseXzAbsMax
+			),
+			linearImpulseY,
+			fastRandomFloatClosed(
+				random,
+				-linearImpulseXzAbsMax,
+				linearImpulseXzAbsMax
+			)
+		);
+
+		final float angularImpulseXyzAbsMax = 1;
+		final Vector3f angularImpulse = new Vector3f(
+			fastRandomFloatClosed(
+				random,
+				-angularImpulseXyzAbsMax,
+				angularImpulseXyzAbsMax
+			),
+			fastRandomFloatClosed(
+				random,
+				-angularImpulseXyzAbsMax,
+				angularImpulseXyzAbsMax
+			),
+			fastRandomFloatClosed(
+				random,
+				-angularImpulseXyzAbsMax,
+				angularImpulseXyzAbsMax
+			)
+		);
+
+		dieBody.applyImpulse(linearImpulse, Vector3f.ZERO);
+		dieBody.applyTorqueImpulse(angularImpulse);
+	}
+
+	/* Read which face of the die is up,
+	 * storing the reading (with its confidence) in reading,
+	 * which also provides the scratch space;
+	 * allocates nothing. */
+	static DieFace readDieFace(
+		final PhysicsRigidBody dieBody,
+		final DieType dieType,
+		final FaceReading reading
 	) {
 		/* If the "most upward" face of the die were exactly horizontal,
 		 * then its outward unit normal would currently be (0, 1, 0).
@@ -1910,54 +3331,16 @@ public class Main extends SimpleApplication {
 		 * of its original outward unit normal
 		 * with the result of applying the inverse of the die's rotation
 		 * to (0, 1, 0),
-		 * is greatest. */
-		final RigidBodyControl dieBody =
-			die.getControl(RigidBodyControl.class);
-		final Quaternion rotation = dieBody.getPhysicsRotation();
-		final Vector3f up = Vector3f.UNIT_Y;
-		final Vector3f upFaceOriginalNormal = rotation.inverse().mult(up);
-
-		DieFace bestFace = null;
-		float bestDot = Float.NEGATIVE_INFINITY;
-		for (final DieFace face : dieType.faces()) {
-			final float dot = upFaceOriginalNormal.dot(face.normal());
-			if (dot > bestDot) {
-				bestDot = dot;
-				bestFace = face;
-			}
-		}
-
-		return bestFace;
+		 * is greatest.
+		 * The die type's face lookup has precomputed
+		 * which faces can be greatest for each small range of directions,
+		 * so only those are compared. */
+		dieBody.getPhysicsRotation(reading.rotation);
+		dieType.faceLookup().read(reading.rotation, reading);
+
+		return dieType.faces()[reading.faceIndex];
 	}
 
-	private static record DiceGroupType(
-		String name,
-		DieType[] dieTypes,
-		Function<DieFace[], DiceGroupRollResult> getRollResultFn
-	) {}
-
-	private static record DiceGroupRollResult(
-		String displayValue,
-		int numericValue
-	) {}
-
-	private static record DieType(
-		String name,
-		Spatial prototype,
-		CollisionShape collisionShape,
-		DieFace[] faces
-	) {}
-
-	private static record DieFace(
-		/* The value on the face. */
-		String displayValue,
-		/* The numeric value of the face,
-		 * used for computing the total roll result. */
-		int numericValue,
-		/* The face's outward unit normal. */
-		Vector3f normal
-	) {}
-
 	private static enum CameraView {
 		VERTICAL,
 		DIAGONAL,
@@ -2002,7 +3385,8 @@ public class Main extends SimpleApplication {
 
 	/* Return a random number chosen uniformly at random
 	 * from the range [origin, bound). */
-	private static float fastRandomFloat(
+	static float fastRandomFloat(
+		final RandomGenerator random,
 		final float origin,
 		final float bound
 	) {
@@ -2028,11 +3412,11 @@ public class Main extends SimpleApplication {
 		 * iff a <= x < b.
 		 * Therefore,
 		 * if we select y to be
-		 * the return value of FastMath.nextRandomFloat(),
+		 * the return value of random.nextFloat(),
 		 * which is chosen uniformly at random from the range [0, 1),
 		 * we chose x uniformly at random from [a, b). */
 		final float a = origin, b = bound;
-		final float y = FastMath.nextRandomFloat();
+		final float y = random.nextFloat();
 		final float x = Math.fma(y, b - a, a);
 
 		return x;
@@ -2040,7 +3424,8 @@ public class Main extends SimpleApplication {
 
 	/* Return a random number chosen uniformly at random
 	 * from the range [origin, bound] */
-	private static float fastRandomFloatClosed(
+	static float fastRandomFloatClosed(
+		final RandomGenerator random,
 		final float origin,
 		final float bound
 	) {
@@ -2052,7 +3437,7 @@ public class Main extends SimpleApplication {
 		 * by definition of the function fastRandomFloat.
 		 * x is chosen uniformly at random
 		 * from the range [a, nextUp(b)) = [a, b]. */
-		return fastRandomFloat(origin, Math.nextUp(bound));
+		return fastRandomFloat(random, origin, Math.nextUp(bound));
 	}
 
 	private static boolean isParallel(final Vector3f a, final Vector3f b) {
@@ -0,0 +1,87 @@
+package com.mygame;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Exact odds of dice-group roll results:
+ * the distribution of the total of diceGroupCount dice groups of a type
+ * (as the HUD totals them),
+ * with fair dice.
+ * Distributions are cached per dice-group type (by name, i.e. notation)
+ * and dice-group count,
+ * the CACHE_SIZE most recently used being kept,
+ * and that of a single dice group is reused for every count,
+ * so a repeated question is a lookup
+ * and a new count is about log2(count) convolutions.
+ * Safe to share between threads,
+ * and worth keeping for as long as questions keep coming
+ * (as the roll server does).
+ * Too many dice groups, or too many possible totals
+ * (more than Distribution.MAX_SUPPORT),
+ * are refused with an IllegalArgumentException. */
+final class Odds {
+	/* The most dice groups a question may total. */
+	static final int MAX_DICE_GROUP_COUNT = 1_000_000;
+	private static final int CACHE_SIZE = 256;
+
+	private final Map<Key, Distribution> cache;
+
+	Odds() {
+		this.cache = Collections.synchronizedMap(
+			new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(
+					final Map.Entry<Key, Distribution> eldest
+				) {
+					return this.size() > CACHE_SIZE;
+				}
+			}
+		);
+	}
+
+	Distribution distribution(
+		final DiceGroupType diceGroupType,
+		final int diceGroupCount
+	) {
+		checkDiceGroupCount(diceGroupCount);
+		final Key key = new Key(diceGroupType.name(), diceGroupCount);
+		Distribution distribution = this.cache.get(key);
+		if (distribution != null) {
+			return distribution;
+		}
+
+		/* Computed outside the lock;
+		 * two threads asking at once just both compute it. */
+		distribution = diceGroupCount == 1
+			? diceGroupType.distributionFn().get()
+			: this.distribution(diceGroupType, 1).times(diceGroupCount);
+		this.cache.put(key, distribution);
+
+		return distribution;
+	}
+
+	/* The probability that diceGroupCount dice groups of the given type
+	 * total at least total. */
+	double atLeast(
+		final DiceGroupType diceGroupType,
+		final int diceGroupCount,
+		final int total
+	) {
+		return this.distribution(diceGroupType, diceGroupCount).atLeast(total);
+	}
+
+	static void checkDiceGroupCount(final int diceGroupCount) {
+		if (diceGroupCount < 1 || diceGroupCount > MAX_DICE_GROUP_COUNT) {
+			throw new IllegalArgumentException(
+				String.format(
+					"invalid dice-group count: %d (1 to %d)",
+					diceGroupCount,
+					MAX_DICE_GROUP_COUNT
+				)
+			);
+		}
+	}
+
+	private static record Key(String diceGroupTypeName, int diceGroupCount) {}
+}
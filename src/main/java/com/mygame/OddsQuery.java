@@ -0,0 +1,44 @@
+package com.mygame;
+
+import java.util.OptionalInt;
+
+/* A question about the exact odds of a roll,
+ * as given on the command line:
+ * --odds TYPE [COUNT [TOTAL]],
+ * where TYPE is a dice-group type name or dice notation (e.g., 4d6kh3),
+ * COUNT is how many dice groups are rolled at once
+ * (at most Odds.MAX_DICE_GROUP_COUNT)
+ * and TOTAL is a total of their results:
+ * with it, the probability of rolling at least TOTAL is printed,
+ * and without it, that of every possible total. */
+record OddsQuery(
+	String diceGroupTypeName,
+	int diceGroupCount,
+	OptionalInt total
+) {
+	static final String ARG = "--odds";
+
+	static OddsQuery parse(final String[] args) {
+		if (args.length < 2 || args.length > 4 || !args[0].equals(ARG)) {
+			throw new IllegalArgumentException(
+				String.format("usage: %s TYPE [COUNT [TOTAL]]", ARG)
+			);
+		}
+
+		final int diceGroupCount =
+			args.length > 2 ? HeadlessBatch.parsePositiveInt(args[2]) : 1;
+		Odds.checkDiceGroupCount(diceGroupCount);
+		OptionalInt total = OptionalInt.empty();
+		if (args.length > 3) {
+			try {
+				total = OptionalInt.of(Integer.parseInt(args[3]));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(
+					String.format("not an integer: %s", args[3])
+				);
+			}
+		}
+
+		return new OddsQuery(args[1], diceGroupCount, total);
+	}
+}
@@ -0,0 +1,114 @@
+package com.mygame;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.jme3.bullet.BulletAppState;
+import com.jme3.bullet.PhysicsSpace;
+
+/* How the window's physics is stepped:
+ * STANDARD with BulletAppState's defaults
+ * (on the render thread, a DBVT broadphase,
+ * 10 solver iterations and up to 4 substeps per frame),
+ * PERFORMANCE on its own thread while the frame renders,
+ * with an AXIS_SWEEP_3 broadphase whose quantized grid
+ * covers just the tray mode's world
+ * (in compact mode, just the dice tray),
+ * fewer solver iterations
+ * (the dice hardly ever stack, so the solver converges quickly)
+ * and at most 2 substeps per frame,
+ * so that a slow frame does not snowball into slower ones.
+ * It can be chosen on the command line with
+ * --physics=NAME (e.g., --physics=performance),
+ * before any mode argument. */
+enum PhysicsProfile {
+	STANDARD,
+	PERFORMANCE;
+
+	static final String ARG_PREFIX = "--physics=";
+	static final PhysicsProfile DEFAULT = STANDARD;
+
+	/* E.g., "performance". */
+	String displayName() {
+		return this.name().toLowerCase(Locale.ROOT);
+	}
+
+	BulletAppState.ThreadingType threadingType() {
+		return switch (this) {
+			case STANDARD -> BulletAppState.ThreadingType.SEQUENTIAL;
+			case PERFORMANCE -> BulletAppState.ThreadingType.PARALLEL;
+		};
+	}
+
+	PhysicsSpace.BroadphaseType broadphaseType() {
+		return switch (this) {
+			case STANDARD -> PhysicsSpace.BroadphaseType.DBVT;
+			case PERFORMANCE -> PhysicsSpace.BroadphaseType.AXIS_SWEEP_3;
+		};
+	}
+
+	int solverIterations() {
+		return switch (this) {
+			case STANDARD -> 10;
+			case PERFORMANCE -> 6;
+		};
+	}
+
+	int maxSubSteps() {
+		return switch (this) {
+			case STANDARD -> 4;
+			case PERFORMANCE -> 2;
+		};
+	}
+
+	/* Create the physics app state for this profile,
+	 * with the world bounds of the given tray mode;
+	 * tune() its physics space once it has been attached. */
+	BulletAppState createAppState(final TrayMode trayMode) {
+		final BulletAppState appState = new BulletAppState();
+		appState.setThreadingType(this.threadingType());
+		appState.setBroadphaseType(this.broadphaseType());
+		appState.setWorldMin(trayMode.worldMin());
+		appState.setWorldMax(trayMode.worldMax());
+
+		return appState;
+	}
+
+	/* A bare physics space for this profile, already tuned.
+	 * (Stepping it is up to the caller,
+	 * so the threading type does not apply.) */
+	PhysicsSpace createSpace(final TrayMode trayMode) {
+		final PhysicsSpace space = new PhysicsSpace(
+			trayMode.worldMin(),
+			trayMode.worldMax(),
+			this.broadphaseType()
+		);
+		this.tune(space);
+
+		return space;
+	}
+
+	void tune(final PhysicsSpace space) {
+		space.getSolverInfo().setNumIterations(this.solverIterations());
+		space.setMaxSubSteps(this.maxSubSteps());
+	}
+
+	/* Parse "--physics=NAME". */
+	static PhysicsProfile parse(final String arg) {
+		if (!arg.startsWith(ARG_PREFIX)) {
+			throw new IllegalArgumentException(
+				String.format("not a %sNAME argument: %s", ARG_PREFIX, arg)
+			);
+		}
+
+		final String name = arg.substring(ARG_PREFIX.length());
+		return Arrays.stream(values())
+			.filter(profile -> profile.displayName().equals(name))
+			.findFirst()
+			.orElseThrow(
+				() -> new IllegalArgumentException(
+					String.format("invalid physics profile: %s", name)
+				)
+			);
+	}
+}
@@ -0,0 +1,104 @@
+package com.mygame;
+
+import com.jme3.renderer.ViewPort;
+
+import com.jme3.system.Timer;
+
+/* Stops rendering while the scene is static:
+ * once nothing has changed for QUIET_FRAMES frames,
+ * the view ports are disabled
+ * (so nothing is rendered, and the AwtPanel attached to them
+ * is not repainted, keeping the last frame on screen)
+ * and each frame blocks the render thread
+ * until woken, or for at most POLL_MILLIS,
+ * so an idle window costs next to no CPU or GPU.
+ * Input and Swing events wake it (from any thread) with wake();
+ * the next frame then resumes rendering. */
+final class RenderOnDemand {
+	private static final int QUIET_FRAMES = 30;
+	/* Idle frames still run this often,
+	 * so that anything not hooked up to wake() is only delayed. */
+	private static final long POLL_MILLIS = 250;
+
+	private final ViewPort[] viewPorts;
+	private final Timer timer;
+	private final Object lock;
+	/* Guarded by this.lock. */
+	private boolean woken;
+
+	/* How many frames in a row nothing has changed. */
+	private int quietFrameCount;
+	private boolean idle;
+	/* How many frames have been skipped while idle (for the metrics). */
+	private long idleFrameCount;
+
+	RenderOnDemand(final Timer timer, final ViewPort... viewPorts) {
+		this.viewPorts = viewPorts;
+		this.timer = timer;
+		this.lock = new Object();
+	}
+
+	/* Resume rendering at the next frame. */
+	void wake() {
+		synchronized (this.lock) {
+			this.woken = true;
+			this.lock.notifyAll();
+		}
+	}
+
+	boolean isIdle() {
+		return this.idle;
+	}
+
+	long idleFrameCount() {
+		return this.idleFrameCount;
+	}
+
+	/* Called once per frame, on the render thread,
+	 * with whether anything in the scene changed during the frame;
+	 * blocks while idle. */
+	void update(final boolean changed) {
+		final boolean woken;
+		synchronized (this.lock) {
+			woken = this.woken;
+			this.woken = false;
+		}
+
+		if (changed || woken) {
+			this.quietFrameCount = 0;
+			if (this.idle) {
+				this.idle = false;
+				this.setViewPortsEnabled(true);
+				/* So that the first frame back does not count
+				 * the whole idle spell as its time per frame. */
+				this.timer.reset();
+			}
+			return;
+		}
+
+		if (!this.idle) {
+			if (++this.quietFrameCount < QUIET_FRAMES) {
+				return;
+			}
+			this.idle = true;
+			this.setViewPortsEnabled(false);
+		}
+
+		++this.idleFrameCount;
+		synchronized (this.lock) {
+			if (!this.woken) {
+				try {
+					this.lock.wait(POLL_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private void setViewPortsEnabled(final boolean enabled) {
+		for (final ViewPort viewPort : this.viewPorts) {
+			viewPort.setEnabled(enabled);
+		}
+	}
+}
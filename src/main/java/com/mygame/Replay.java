@@ -0,0 +1,26 @@
+package com.mygame;
+
+/* A single headless roll to replay from its seed,
+ * as given on the command line:
+ * --replay TYPE COUNT SEED,
+ * where TYPE is a dice-group type name (e.g., D20) or dice notation,
+ * COUNT is how many dice groups were rolled at once
+ * and SEED is the roll's seed
+ * (as recorded in the roll journal, say). */
+record Replay(String diceGroupTypeName, int diceGroupCount, long seed) {
+	static final String ARG = "--replay";
+
+	static Replay parse(final String[] args) {
+		if (args.length != 4 || !args[0].equals(ARG)) {
+			throw new IllegalArgumentException(
+				String.format("usage: %s TYPE COUNT SEED", ARG)
+			);
+		}
+
+		return new Replay(
+			args[1],
+			HeadlessBatch.parsePositiveInt(args[2]),
+			HeadlessBatch.parseLong(args[3])
+		);
+	}
+}
@@ -0,0 +1,182 @@
+package com.mygame;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/* Statistics of dice-group roll results,
+ * updated as each result arrives, without keeping the results,
+ * so adding one costs the same however many came before:
+ * the count, sum, minimum and maximum of the numeric values,
+ * their mean and variance
+ * (by Welford's method, which, unlike summing squares,
+ * does not lose precision over long runs)
+ * and, per die type, how many times each of its faces came up.
+ * Two aggregates can be merged
+ * (combining the means and variances as Chan et al. do),
+ * so that workers can each aggregate their own rolls.
+ * An aggregator must only be used by one thread at a time. */
+final class RollAggregator {
+	private long count;
+	private long sum;
+	private int min;
+	private int max;
+	private double mean;
+	/* The sum of squared differences from the mean. */
+	private double m2;
+	/* Per die type: per face (indexed as in its faces),
+	 * how many times it came up. */
+	private final Map<DieType, long[]> faceCounts;
+
+	RollAggregator() {
+		this.faceCounts = new IdentityHashMap<>();
+		this.reset();
+	}
+
+	void reset() {
+		this.count = 0;
+		this.sum = 0;
+		this.min = Integer.MAX_VALUE;
+		this.max = Integer.MIN_VALUE;
+		this.mean = 0;
+		this.m2 = 0;
+		this.faceCounts.clear();
+	}
+
+	/* Add a dice group's roll result,
+	 * given the dice group's die types and the faces they came up on. */
+	void add(
+		final DieType[] dieTypes,
+		final DieFace[] faces,
+		final DiceGroupRollResult result
+	) {
+		final int x = result.numericValue();
+		++this.count;
+		this.sum += x;
+		this.min = Math.min(this.min, x);
+		this.max = Math.max(this.max, x);
+		final double delta = x - this.mean;
+		this.mean += delta / this.count;
+		this.m2 += delta * (x - this.mean);
+
+		for (int j = 0; j < dieTypes.length; ++j) {
+			final DieFace[] typeFaces = dieTypes[j].faces();
+			final long[] counts = this.faceCounts.computeIfAbsent(
+				dieTypes[j],
+				dieType -> new long[typeFaces.length]
+			);
+			/* At most 20 faces; compared by identity. */
+			for (int f = 0; f < typeFaces.length; ++f) {
+				if (typeFaces[f] == faces[j]) {
+					++counts[f];
+					break;
+				}
+			}
+		}
+	}
+
+	/* Add everything aggregated by other. */
+	void merge(final RollAggregator other) {
+		if (other.count == 0) {
+			return;
+		}
+
+		final long n = this.count + other.count;
+		final double delta = other.mean - this.mean;
+		this.m2 += other.m2
+			+ delta * delta * ((double)this.count * other.count / n);
+		this.mean += delta * other.count / n;
+		this.count = n;
+		this.sum += other.sum;
+		this.min = Math.min(this.min, other.min);
+		this.max = Math.max(this.max, other.max);
+
+		for (final Map.Entry<DieType, long[]> e : other.faceCounts.entrySet()) {
+			final long[] otherCounts = e.getValue();
+			final long[] counts = this.faceCounts.computeIfAbsent(
+				e.getKey(),
+				dieType -> new long[otherCounts.length]
+			);
+			for (int f = 0; f < counts.length; ++f) {
+				counts[f] += otherCounts[f];
+			}
+		}
+	}
+
+	long count() {
+		return this.count;
+	}
+
+	long sum() {
+		return this.sum;
+	}
+
+	/* Integer.MAX_VALUE if there are no results. */
+	int min() {
+		return this.min;
+	}
+
+	/* Integer.MIN_VALUE if there are no results. */
+	int max() {
+		return this.max;
+	}
+
+	double mean() {
+		return this.mean;
+	}
+
+	/* The sample variance (0 for fewer than two results). */
+	double variance() {
+		return this.count > 1 ? this.m2 / (this.count - 1) : 0;
+	}
+
+	double standardDeviation() {
+		return Math.sqrt(this.variance());
+	}
+
+	/* How many times each face of the die type came up
+	 * (a copy, indexed as in its faces). */
+	long[] faceCounts(final DieType dieType) {
+		final long[] counts = this.faceCounts.get(dieType);
+		return counts != null
+			? counts.clone()
+			: new long[dieType.faces().length];
+	}
+
+	/* E.g., "1000 results: total 10473, min 1, max 20,
+	 * mean 10.47 (sd 5.77)",
+	 * followed by a line per die type with its face counts. */
+	String describe() {
+		if (this.count == 0) {
+			return "0 results";
+		}
+
+		final StringBuilder sb = new StringBuilder(
+			String.format(
+				"%d results: total %d, min %d, max %d, mean %.2f (sd %.2f)",
+				this.count,
+				this.sum,
+				this.min,
+				this.max,
+				this.mean,
+				this.standardDeviation()
+			)
+		);
+		this.faceCounts.entrySet().stream()
+			.sorted(
+				Map.Entry.comparingByKey(Comparator.comparing(DieType::name))
+			)
+			.forEach(
+				e -> sb.append(System.lineSeparator()).append(
+					String.format(
+						"%s faces: %s",
+						e.getKey().name(),
+						Arrays.toString(e.getValue())
+					)
+				)
+			);
+
+		return sb.toString();
+	}
+}
@@ -0,0 +1,16 @@
+package com.mygame;
+
+/* Computes the numeric roll result of a dice group
+ * from the numeric values of its dice's faces,
+ * values[offset] onwards
+ * (in the order of the dice-group type's die types),
+ * without allocating.
+ * The evaluation may overwrite those values
+ * (keeping or dropping dice sorts them in place),
+ * and rolls any dice it rolls again with faceRoller.
+ * Evaluators hold no state,
+ * so one can be shared by several threads. */
+@FunctionalInterface
+interface RollEvaluator {
+	int evaluate(int[] values, int offset, FaceRoller faceRoller);
+}
@@ -0,0 +1,258 @@
+package com.mygame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/* Distributes rolls over several worker threads,
+ * each owning a HeadlessRoller
+ * (and thus its own physics spaces, copy of the dice tray
+ * and pool of die bodies),
+ * so that throughput scales with the number of cores.
+ * A batch's rolls are handed out a few at a time as others finish,
+ * so however many rolls a batch has,
+ * only ROLLS_IN_FLIGHT_PER_WORKER per worker are queued at once. */
+final class RollFarm implements AutoCloseable {
+	/* Enough that a worker never waits for its next roll
+	 * while the calling thread takes in an outcome. */
+	private static final int ROLLS_IN_FLIGHT_PER_WORKER = 2;
+	/* Tells a worker to stop. */
+	private static final RollJob POISON = new RollJob(null, 0, 0);
+
+	/* Both hold at most this.maxRollsInFlight. */
+	private final BlockingQueue<RollJob> jobs;
+	private final BlockingQueue<RollOutcome> outcomes;
+	/* How many of a batch's rolls may be queued, rolling
+	 * or waiting to be taken in at once. */
+	private final int maxRollsInFlight;
+	private final List<Thread> workers;
+	/* What the dice collide as. */
+	private final CollisionShapeStrategy collisionShapeStrategy;
+	/* Cocked-die re-rolls over all batches so far. */
+	private long rerollCount;
+	/* Statistics of all batches so far,
+	 * merged from each roll's own (aggregated on its worker). */
+	private final RollAggregator aggregate;
+
+	RollFarm(
+		final int workerCount,
+		final CollisionShapeStrategy collisionShapeStrategy
+	) {
+		if (workerCount <= 0) {
+			throw new IllegalArgumentException("invalid worker count");
+		}
+
+		this.maxRollsInFlight = ROLLS_IN_FLIGHT_PER_WORKER * workerCount;
+		this.jobs = new ArrayBlockingQueue<>(this.maxRollsInFlight);
+		this.outcomes = new ArrayBlockingQueue<>(this.maxRollsInFlight);
+		this.workers = new ArrayList<>(workerCount);
+		this.collisionShapeStrategy = collisionShapeStrategy;
+		this.aggregate = new RollAggregator();
+
+		for (int i = 0; i < workerCount; ++i) {
+			final Thread worker = new Thread(
+				this::runWorker,
+				String.format("roll-farm-worker-%d", i)
+			);
+			worker.setDaemon(true);
+			this.workers.add(worker);
+			worker.start();
+		}
+	}
+
+	int workerCount() {
+		return this.workers.size();
+	}
+
+	/* How many cocked dice have been rolled again
+	 * in the batches rolled so far. */
+	long rerollCount() {
+		return this.rerollCount;
+	}
+
+	/* Statistics of the batches rolled so far
+	 * (only to be read on the thread that rolls them). */
+	RollAggregator aggregate() {
+		return this.aggregate;
+	}
+
+	/* Roll diceGroupCount dice groups of the given type rollCount times,
+	 * spread over the workers,
+	 * seeding the rolls with successive nextLong() values
+	 * of a SplittableRandom seeded with seed
+	 * (so the batch as a whole is reproducible,
+	 * and any one of its rolls can be replayed with HeadlessRoller),
+	 * and pass every dice group's roll, with its roll's seed, to sink,
+	 * on the calling thread,
+	 * in the order in which the rolls finish.
+	 * Return the total simulated time (in seconds) of all the rolls.
+	 * If a roll fails (or sink throws),
+	 * the batch's rolls not yet rolled are dropped
+	 * and those being rolled waited out before this throws,
+	 * so none are left over for the next batch. */
+	float rollBatch(
+		final DiceGroupType diceGroupType,
+		final int diceGroupCount,
+		final int rollCount,
+		final long seed,
+		final Sink sink
+	) throws InterruptedException {
+		final SplittableRandom seeds = new SplittableRandom(seed);
+		int submittedCount = 0;
+		int finishedCount = 0;
+		float simulatedTime = 0;
+		try {
+			while (finishedCount < rollCount) {
+				/* Top the workers up before waiting for the next outcome. */
+				while (
+					submittedCount < rollCount
+					&& submittedCount - finishedCount < this.maxRollsInFlight
+				) {
+					/* There is always room, so this never blocks. */
+					this.jobs.put(
+						new RollJob(diceGroupType, diceGroupCount, seeds.nextLong())
+					);
+					++submittedCount;
+				}
+
+				final RollOutcome outcome = this.outcomes.take();
+				++finishedCount;
+				if (outcome.failure() != null) {
+					throw new IllegalStateException(
+						"roll-farm worker failed",
+						outcome.failure()
+					);
+				}
+
+				for (final DiceGroupRoll diceGroupRoll : outcome.rolls()) {
+					sink.accept(outcome.seed(), diceGroupRoll);
+				}
+				simulatedTime += outcome.simulatedTime();
+				this.rerollCount += outcome.rerollCount();
+				this.aggregate.merge(outcome.aggregator());
+			}
+		} finally {
+			if (finishedCount < rollCount) {
+				this.cancel(submittedCount - finishedCount);
+			}
+		}
+
+		return simulatedTime;
+	}
+
+	/* Drop the queued rolls of a batch that is being abandoned
+	 * and discard the outcomes of the rest of its unfinished rolls,
+	 * waiting for those still being rolled. */
+	private void cancel(final int unfinishedCount) throws InterruptedException {
+		final List<RollJob> dropped = new ArrayList<>();
+		this.jobs.drainTo(dropped);
+		for (int i = dropped.size(); i < unfinishedCount; ++i) {
+			this.outcomes.take();
+		}
+	}
+
+	/* Every job taken gets an outcome,
+	 * a failure if the roll throws anything at all
+	 * (or if the roller could not even be built),
+	 * so rollBatch never waits on one that is not coming. */
+	private void runWorker() {
+		HeadlessRoller roller = null;
+		Throwable rollerFailure = null;
+		try {
+			/* The physics space must be created on the thread that steps it. */
+			roller = new HeadlessRoller(this.collisionShapeStrategy);
+		} catch (Throwable e) {
+			rollerFailure = e;
+		}
+		try {
+			while (true) {
+				final RollJob job = this.jobs.take();
+				if (job == POISON) {
+					break;
+				}
+				if (rollerFailure != null) {
+					this.outcomes.put(
+						new RollOutcome(0, null, 0, 0, null, rollerFailure)
+					);
+					continue;
+				}
+
+				final List<DiceGroupRoll> rolls =
+					new ArrayList<>(job.diceGroupCount());
+				final RollAggregator aggregator = new RollAggregator();
+				try {
+					final float simulatedTime = roller.roll(
+						job.diceGroupType(),
+						job.diceGroupCount(),
+						job.seed(),
+						aggregator,
+						rolls::add
+					);
+					this.outcomes.put(
+						new RollOutcome(
+							job.seed(),
+							rolls,
+							simulatedTime,
+							roller.lastRerollCount(),
+							aggregator,
+							null
+						)
+					);
+				} catch (Throwable e) {
+					/* Including Errors (from native Bullet, say),
+					 * which would otherwise end the thread silently. */
+					this.outcomes.put(new RollOutcome(0, null, 0, 0, null, e));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (roller != null) {
+				roller.destroy();
+			}
+		}
+	}
+
+	/* Stop the workers, once they have finished any queued rolls. */
+	@Override
+	public void close() {
+		for (int i = 0; i < this.workers.size(); ++i) {
+			/* No batch is rolling,
+			 * so the queue is empty and has room for them all. */
+			this.jobs.add(POISON);
+		}
+
+		try {
+			for (final Thread worker : this.workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static record RollJob(
+		DiceGroupType diceGroupType,
+		int diceGroupCount,
+		long seed
+	) {}
+
+	/* Takes a batch's dice-group rolls,
+	 * each with the seed of the roll it was part of. */
+	@FunctionalInterface
+	interface Sink {
+		void accept(long seed, DiceGroupRoll diceGroupRoll);
+	}
+
+	private static record RollOutcome(
+		long seed,
+		List<DiceGroupRoll> rolls,
+		float simulatedTime,
+		int rerollCount,
+		RollAggregator aggregator,
+		Throwable failure
+	) {}
+}
@@ -0,0 +1,596 @@
+package com.mygame;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* An append-only, memory-mapped binary log of dice-group roll results,
+ * for auditing every roll.
+ *
+ * The file starts with a HEADER_SIZE-byte header:
+ * the magic number, the format version, the record size,
+ * the number of records written (updated after every roll)
+ * and the names of the dice-group types,
+ * which records refer to by index:
+ * the built-in types the journal was created with,
+ * then any dice notation types, by their notation,
+ * each added the first time one of its rolls is appended.
+ * Then come RECORD_SIZE-byte records (all numbers big-endian),
+ * one per dice-group roll:
+ *   0  long   timestamp (milliseconds since the epoch)
+ *   8  long   seed of the roll (0 if not seeded)
+ *  16  float  settle time (simulated seconds from the roll to the reading)
+ *  20  int    numeric value of the dice-group roll result
+ *  24  short  dice-group type index
+ *  26  ubyte  number of dice (at most MAX_DICE)
+ *  27  byte   (reserved)
+ *  28  byte[] face index of each of the first RECORD_FACES dice
+ *             (unused ones 0xFF)
+ * each followed, if it has more dice than that,
+ * by as many records as it takes to hold the face indices of the rest,
+ * RECORD_SIZE of them to a record
+ * (unused ones 0xFF).
+ * Version 1 journals, which only had built-in types
+ * (so no more than RECORD_FACES dice per roll),
+ * are read the same way, and become version 2 when appended to.
+ *
+ * The records are written through CHUNK_SIZE-byte mappings of the file,
+ * which grows a chunk at a time (from the first record appended),
+ * so appending is a handful of stores into memory;
+ * closing the journal truncates the file after the last record.
+ * A journal is locked while open for appending,
+ * so only one window, batch or server writes to it at a time.
+ * Reading maps the file a chunk at a time as well,
+ * so any number of records can be streamed through a Reader
+ * without holding them in the heap. */
+final class RollJournal implements AutoCloseable {
+	static final Path DEFAULT_PATH = Path.of("rolls.journal");
+	static final String READ_ARG = "--read-journal";
+	/* Before any mode argument: the journal the window appends to. */
+	static final String ARG_PREFIX = "--journal=";
+
+	/* Dice per dice-group roll (as many as a byte counts). */
+	static final int MAX_DICE = 0xFF;
+
+	/* "DICEJRNL". */
+	private static final long MAGIC = 0x4449_4345_4A52_4E4CL;
+	private static final int VERSION = 2;
+	/* Without dice notation types. */
+	private static final int VERSION_1 = 1;
+	private static final int HEADER_SIZE = 4096;
+	private static final int RECORD_SIZE = 32;
+	/* A whole number of records: 64 MiB. */
+	private static final int CHUNK_SIZE = RECORD_SIZE << 21;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 8;
+	private static final int RECORD_SIZE_OFFSET = 12;
+	private static final int RECORD_COUNT_OFFSET = 16;
+	private static final int TYPE_COUNT_OFFSET = 24;
+	private static final int TYPE_NAMES_OFFSET = 28;
+
+	private static final int TIMESTAMP_OFFSET = 0;
+	private static final int SEED_OFFSET = 8;
+	private static final int SETTLE_TIME_OFFSET = 16;
+	private static final int NUMERIC_VALUE_OFFSET = 20;
+	private static final int TYPE_IDX_OFFSET = 24;
+	private static final int DIE_COUNT_OFFSET = 26;
+	private static final int FACE_IDX_OFFSET = 28;
+	/* Face indices in a roll's own record. */
+	private static final int RECORD_FACES = RECORD_SIZE - FACE_IDX_OFFSET;
+
+	private static final byte NO_FACE = (byte)0xFF;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	/* The built-in types' indices. */
+	private final Map<DiceGroupType, Integer> typeIdxs;
+	/* The dice notation types' indices, by name
+	 * (a notation type is compiled anew each time it is entered). */
+	private final Map<String, Integer> notationTypeIdxs;
+	private int typeCount;
+	/* Where the next type name goes in the header. */
+	private int typeNamesEnd;
+	/* Null until the first record is appended. */
+	private MappedByteBuffer chunk;
+	private long chunkIdx;
+	private long recordCount;
+
+	private RollJournal(
+		final Path path,
+		final FileChannel channel,
+		final MappedByteBuffer header,
+		final Map<DiceGroupType, Integer> typeIdxs,
+		final Map<String, Integer> notationTypeIdxs,
+		final int typeNamesEnd
+	) {
+		this.path = path;
+		this.channel = channel;
+		this.header = header;
+		this.typeIdxs = typeIdxs;
+		this.notationTypeIdxs = notationTypeIdxs;
+		this.typeCount = typeIdxs.size() + notationTypeIdxs.size();
+		this.typeNamesEnd = typeNamesEnd;
+		this.recordCount = header.getLong(RECORD_COUNT_OFFSET);
+		this.chunkIdx = -1;
+	}
+
+	/* The journal path of a --journal=PATH argument. */
+	static Path parsePath(final String arg) {
+		if (!arg.startsWith(ARG_PREFIX) || arg.length() == ARG_PREFIX.length()) {
+			throw new IllegalArgumentException(
+				String.format("not a %sPATH argument: %s", ARG_PREFIX, arg)
+			);
+		}
+
+		return Path.of(arg.substring(ARG_PREFIX.length()));
+	}
+
+	/* Open the journal at path for appending, creating it if need be,
+	 * and lock it.
+	 * An existing journal must have been created
+	 * with the same built-in dice-group types,
+	 * and must not be open for appending elsewhere. */
+	static RollJournal open(
+		final Path path,
+		final DiceGroupType[] diceGroupTypes
+	) throws IOException {
+		final FileChannel channel = FileChannel.open(
+			path,
+			StandardOpenOption.CREATE,
+			StandardOpenOption.READ,
+			StandardOpenOption.WRITE
+		);
+		try {
+			final FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				throw new IOException(
+					String.format("%s is already open", path),
+					e
+				);
+			}
+			if (lock == null) {
+				throw new IOException(
+					String.format("%s is open in another process", path)
+				);
+			}
+
+			final boolean isNew = channel.size() == 0;
+			final MappedByteBuffer header =
+				channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+			final String[] typeNames = Arrays.stream(diceGroupTypes)
+				.map(DiceGroupType::name)
+				.toArray(String[]::new);
+			final String[] journalTypeNames;
+			if (isNew) {
+				writeHeader(header, typeNames);
+				journalTypeNames = typeNames;
+			} else {
+				journalTypeNames = readHeader(header, path);
+				if (
+					journalTypeNames.length < typeNames.length
+					|| !Arrays.equals(
+						journalTypeNames,
+						0,
+						typeNames.length,
+						typeNames,
+						0,
+						typeNames.length
+					)
+				) {
+					throw new IOException(
+						String.format(
+							"%s was written with different dice-group types",
+							path
+						)
+					);
+				}
+				header.putInt(VERSION_OFFSET, VERSION);
+			}
+
+			final Map<DiceGroupType, Integer> typeIdxs =
+				new IdentityHashMap<>();
+			for (int i = 0; i < diceGroupTypes.length; ++i) {
+				typeIdxs.put(diceGroupTypes[i], i);
+			}
+			final Map<String, Integer> notationTypeIdxs = new HashMap<>();
+			for (int i = typeNames.length; i < journalTypeNames.length; ++i) {
+				notationTypeIdxs.put(journalTypeNames[i], i);
+			}
+
+			return new RollJournal(
+				path,
+				channel,
+				header,
+				typeIdxs,
+				notationTypeIdxs,
+				/* Where readHeader() or writeHeader() left off. */
+				header.position()
+			);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/* Append the result of rolling a dice group of the given type
+	 * (a built-in type the journal was opened with,
+	 * or one compiled from dice notation)
+	 * whose dice came up on the given faces.
+	 * Throws IOException if the header has no room
+	 * for the name of yet another dice notation type. */
+	void append(
+		final DiceGroupType diceGroupType,
+		final DieFace[] faces,
+		final DiceGroupRollResult result,
+		final long seed,
+		final long timestampMillis,
+		final float settleTime
+	) throws IOException {
+		if (faces.length > MAX_DICE) {
+			throw new IllegalArgumentException(
+				String.format(
+					"too many dice to journal (over %d): %s",
+					MAX_DICE,
+					diceGroupType.name()
+				)
+			);
+		}
+		final int typeIdx = this.typeIdx(diceGroupType);
+
+		int at = this.mapRecord(this.recordCount);
+		ByteBuffer c = this.chunk;
+		c.putLong(at + TIMESTAMP_OFFSET, timestampMillis);
+		c.putLong(at + SEED_OFFSET, seed);
+		c.putFloat(at + SETTLE_TIME_OFFSET, settleTime);
+		c.putInt(at + NUMERIC_VALUE_OFFSET, result.numericValue());
+		c.putShort(at + TYPE_IDX_OFFSET, (short)typeIdx);
+		c.put(at + DIE_COUNT_OFFSET, (byte)faces.length);
+		final DieType[] dieTypes = diceGroupType.dieTypes();
+		at += FACE_IDX_OFFSET;
+		int atEnd = at + RECORD_FACES;
+		long recordCount = this.recordCount + 1;
+		for (int j = 0; j < faces.length || at < atEnd; ++j) {
+			if (at == atEnd) {
+				/* The rest go in records of their own. */
+				at = this.mapRecord(recordCount++);
+				atEnd = at + RECORD_SIZE;
+				c = this.chunk;
+			}
+			c.put(
+				at++,
+				j < faces.length
+					? (byte)faceIdx(dieTypes[j], faces[j])
+					: NO_FACE
+			);
+		}
+
+		/* Only now does the roll count as written. */
+		this.recordCount = recordCount;
+		this.header.putLong(RECORD_COUNT_OFFSET, this.recordCount);
+	}
+
+	long recordCount() {
+		return this.recordCount;
+	}
+
+	/* Flush the journal to disk, cut off the rest of its last chunk
+	 * and close it (which releases the lock). */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (this.chunk != null) {
+				this.chunk.force();
+			}
+			this.header.force();
+			this.chunk = null;
+			try {
+				this.channel.truncate(HEADER_SIZE + this.recordCount * RECORD_SIZE);
+			} catch (IOException e) {
+				/* Some platforms (Windows) refuse to truncate
+				 * a file that is still mapped;
+				 * the record count in the header
+				 * still says where the records end. */
+			}
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	/* The index of the given dice-group type's name in the header,
+	 * adding a dice notation type's if it is not there yet. */
+	private int typeIdx(final DiceGroupType diceGroupType) throws IOException {
+		final Integer typeIdx = this.typeIdxs.get(diceGroupType);
+		if (typeIdx != null) {
+			return typeIdx;
+		}
+		final Integer notationTypeIdx =
+			this.notationTypeIdxs.get(diceGroupType.name());
+		if (notationTypeIdx != null) {
+			return notationTypeIdx;
+		}
+
+		final byte[] bytes = diceGroupType.name().getBytes(StandardCharsets.UTF_8);
+		if (this.typeNamesEnd + Short.BYTES + bytes.length > HEADER_SIZE) {
+			throw new IOException(
+				String.format(
+					"%s has no room for another dice-group type: %s",
+					this.path,
+					diceGroupType.name()
+				)
+			);
+		}
+		this.header.position(this.typeNamesEnd);
+		this.header.putShort((short)bytes.length);
+		this.header.put(bytes);
+		this.typeNamesEnd = this.header.position();
+		/* Only now does the name count as written. */
+		this.header.putInt(TYPE_COUNT_OFFSET, this.typeCount + 1);
+
+		this.notationTypeIdxs.put(diceGroupType.name(), this.typeCount);
+		return this.typeCount++;
+	}
+
+	/* Map the chunk of the record with the given index, if need be,
+	 * and return the record's offset in it. */
+	private int mapRecord(final long recordIdx) throws IOException {
+		final long offset = recordIdx * RECORD_SIZE;
+		final long chunkIdx = offset / CHUNK_SIZE;
+		if (chunkIdx != this.chunkIdx) {
+			if (this.chunk != null) {
+				this.chunk.force();
+			}
+			/* Mapping beyond the end of the file grows it. */
+			this.chunk = this.channel.map(
+				FileChannel.MapMode.READ_WRITE,
+				HEADER_SIZE + chunkIdx * CHUNK_SIZE,
+				CHUNK_SIZE
+			);
+			this.chunkIdx = chunkIdx;
+		}
+
+		return (int)(offset % CHUNK_SIZE);
+	}
+
+	private static int faceIdx(final DieType dieType, final DieFace face) {
+		final DieFace[] faces = dieType.faces();
+		for (int i = 0; i < faces.length; ++i) {
+			if (faces[i] == face) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException(
+			String.format("not a face of %s", dieType.name())
+		);
+	}
+
+	private static void writeHeader(
+		final ByteBuffer header,
+		final String[] typeNames
+	) {
+		header.putLong(MAGIC_OFFSET, MAGIC);
+		header.putInt(VERSION_OFFSET, VERSION);
+		header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+		header.putLong(RECORD_COUNT_OFFSET, 0);
+		header.putInt(TYPE_COUNT_OFFSET, typeNames.length);
+
+		header.position(TYPE_NAMES_OFFSET);
+		for (final String typeName : typeNames) {
+			final byte[] bytes = typeName.getBytes(StandardCharsets.UTF_8);
+			header.putShort((short)bytes.length);
+			header.put(bytes);
+		}
+	}
+
+	/* Check the header and return the dice-group type names in it,
+	 * leaving its position after them. */
+	private static String[] readHeader(
+		final ByteBuffer header,
+		final Path path
+	) throws IOException {
+		final int version = header.getInt(VERSION_OFFSET);
+		if (
+			header.getLong(MAGIC_OFFSET) != MAGIC
+			|| (version != VERSION && version != VERSION_1)
+			|| header.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE
+		) {
+			throw new IOException(
+				String.format("%s is not a roll journal", path)
+			);
+		}
+
+		final int typeCount = header.getInt(TYPE_COUNT_OFFSET);
+		final List<String> typeNames = new ArrayList<>(typeCount);
+		header.position(TYPE_NAMES_OFFSET);
+		for (int i = 0; i < typeCount; ++i) {
+			final byte[] bytes = new byte[header.getShort()];
+			header.get(bytes);
+			typeNames.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+
+		return typeNames.toArray(String[]::new);
+	}
+
+	/* Streams the rolls in a journal, in the order written,
+	 * one at a time:
+	 * next() moves to the next roll,
+	 * whose fields the other methods then return.
+	 * Only a chunk of the file is mapped at a time,
+	 * and moving between rolls allocates nothing. */
+	static final class Reader implements AutoCloseable {
+		private final FileChannel channel;
+		private final String[] typeNames;
+		private final long recordCount;
+		private MappedByteBuffer chunk;
+		private long chunkIdx;
+		/* The index of the next roll's record. */
+		private long recordIdx;
+
+		/* The current roll's fields. */
+		private long timestampMillis;
+		private long seed;
+		private float settleTime;
+		private int numericValue;
+		private int diceGroupTypeIdx;
+		private int dieCount;
+		private final byte[] faceIdxs;
+
+		private Reader(
+			final FileChannel channel,
+			final String[] typeNames,
+			final long recordCount
+		) {
+			this.channel = channel;
+			this.typeNames = typeNames;
+			this.recordCount = recordCount;
+			this.chunkIdx = -1;
+			this.faceIdxs = new byte[MAX_DICE];
+		}
+
+		static Reader open(final Path path) throws IOException {
+			final FileChannel channel =
+				FileChannel.open(path, StandardOpenOption.READ);
+			try {
+				if (channel.size() < HEADER_SIZE) {
+					throw new IOException(
+						String.format("%s is not a roll journal", path)
+					);
+				}
+
+				final MappedByteBuffer header = channel.map(
+					FileChannel.MapMode.READ_ONLY,
+					0,
+					HEADER_SIZE
+				);
+				return new Reader(
+					channel,
+					readHeader(header, path),
+					header.getLong(RECORD_COUNT_OFFSET)
+				);
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/* How many records the journal has
+		 * (a roll's, and those holding the rest of its face indices). */
+		long recordCount() {
+			return this.recordCount;
+		}
+
+		/* Move to the next roll; return false if there is none. */
+		boolean next() throws IOException {
+			if (this.recordIdx >= this.recordCount) {
+				return false;
+			}
+
+			int at = this.mapRecord(this.recordIdx++);
+			ByteBuffer c = this.chunk;
+			this.timestampMillis = c.getLong(at + TIMESTAMP_OFFSET);
+			this.seed = c.getLong(at + SEED_OFFSET);
+			this.settleTime = c.getFloat(at + SETTLE_TIME_OFFSET);
+			this.numericValue = c.getInt(at + NUMERIC_VALUE_OFFSET);
+			this.diceGroupTypeIdx = c.getShort(at + TYPE_IDX_OFFSET);
+			this.dieCount = Byte.toUnsignedInt(c.get(at + DIE_COUNT_OFFSET));
+			at += FACE_IDX_OFFSET;
+			int atEnd = at + RECORD_FACES;
+			for (int j = 0; j < this.dieCount; ++j) {
+				if (at == atEnd) {
+					if (this.recordIdx >= this.recordCount) {
+						throw new IOException("roll journal cut off mid-roll");
+					}
+					at = this.mapRecord(this.recordIdx++);
+					atEnd = at + RECORD_SIZE;
+					c = this.chunk;
+				}
+				this.faceIdxs[j] = c.get(at++);
+			}
+
+			return true;
+		}
+
+		long timestampMillis() {
+			return this.timestampMillis;
+		}
+
+		long seed() {
+			return this.seed;
+		}
+
+		float settleTime() {
+			return this.settleTime;
+		}
+
+		int numericValue() {
+			return this.numericValue;
+		}
+
+		int diceGroupTypeIdx() {
+			return this.diceGroupTypeIdx;
+		}
+
+		/* A built-in type's name, or a dice notation type's notation. */
+		String diceGroupTypeName() {
+			return this.typeNames[this.diceGroupTypeIdx];
+		}
+
+		int dieCount() {
+			return this.dieCount;
+		}
+
+		/* The index, into its DieType's faces, of the face die j came up on. */
+		int faceIdx(final int j) {
+			return Byte.toUnsignedInt(this.faceIdxs[j]);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+
+		/* Map the chunk of the record with the given index, if need be,
+		 * and return the record's offset in it. */
+		private int mapRecord(final long recordIdx) throws IOException {
+			final long offset = recordIdx * RECORD_SIZE;
+			final long chunkIdx = offset / CHUNK_SIZE;
+			if (chunkIdx != this.chunkIdx) {
+				final long chunkOffset = chunkIdx * CHUNK_SIZE;
+				final long chunkSize = Math.min(
+					CHUNK_SIZE,
+					this.recordCount * RECORD_SIZE - chunkOffset
+				);
+				this.chunk = this.channel.map(
+					FileChannel.MapMode.READ_ONLY,
+					HEADER_SIZE + chunkOffset,
+					chunkSize
+				);
+				this.chunkIdx = chunkIdx;
+			}
+
+			return (int)(offset % CHUNK_SIZE);
+		}
+	}
+}
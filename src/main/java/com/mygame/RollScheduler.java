@@ -0,0 +1,310 @@
+package com.mygame;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Hands out the rolls of roll requests to simulation workers,
+ * round-robin among the requests with rolls left
+ * (one roll from each in turn),
+ * so that a request of a few rolls waits for at most one roll
+ * of each other request,
+ * however many rolls those have left,
+ * rather than for all of them.
+ * A request whose client has MAX_UNSENT_ROLLS roll results
+ * rolled but not yet sent to it is passed over until it catches up,
+ * so a client that reads its results slowly
+ * holds up neither the workers nor the other clients.
+ * At most a given number of requests are queued at once;
+ * more wait to be submitted.
+ * Metrics of the queue and of how long requests wait in it
+ * (from being submitted to their first roll being taken)
+ * are kept as it goes.
+ * Thread-safe. */
+final class RollScheduler {
+	/* How many of a client's rolls may be rolled (or rolling)
+	 * but not yet sent to it at once. */
+	static final int MAX_UNSENT_ROLLS = 16;
+
+	private final ReentrantLock lock;
+	/* Signalled when a roll may have become available. */
+	private final Condition rollAvailable;
+	/* Signalled when a request may be queued. */
+	private final Condition notFull;
+	/* How many requests may be queued at once. */
+	private final int capacity;
+	/* The requests with rolls left, the next to roll first.
+	 * Guarded by this.lock, as is everything mutable below. */
+	private final Deque<Request> requests;
+	private boolean closed;
+
+	/* The rolls left of the queued requests. */
+	private long queuedRollCount;
+	/* Rolls taken but not yet finished. */
+	private int rollingCount;
+	/* How many requests have had their first roll taken,
+	 * and the sum and maximum of how long they waited for it. */
+	private long startedRequestCount;
+	private long waitNanosSum;
+	private long waitNanosMax;
+	/* How many of those waits took [2^(i - 1), 2^i) microseconds
+	 * (waitHistogram[0]: under a microsecond). */
+	private final long[] waitHistogram;
+
+	RollScheduler(final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("invalid capacity");
+		}
+
+		this.lock = new ReentrantLock();
+		this.rollAvailable = this.lock.newCondition();
+		this.notFull = this.lock.newCondition();
+		this.capacity = capacity;
+		this.requests = new ArrayDeque<>();
+		this.waitHistogram = new long[Long.SIZE];
+	}
+
+	/* Queue a request, waiting for room if the queue is full. */
+	void submit(final Request request) throws InterruptedException {
+		this.lock.lock();
+		try {
+			request.submitNanos = System.nanoTime();
+			while (!this.closed && this.requests.size() >= this.capacity) {
+				this.notFull.await();
+			}
+			if (this.closed || request.client.cancelled) {
+				return;
+			}
+			this.requests.addLast(request);
+			this.queuedRollCount += request.rollCount;
+			this.rollAvailable.signal();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/* The next roll to roll, waiting for one;
+	 * null once the scheduler is closed. */
+	Roll take() throws InterruptedException {
+		this.lock.lock();
+		try {
+			while (!this.closed) {
+				for (int k = this.requests.size(); k > 0; --k) {
+					final Request request = this.requests.pollFirst();
+					final Client client = request.client;
+					if (client.unsentRollCount >= MAX_UNSENT_ROLLS) {
+						this.requests.addLast(request);
+						continue;
+					}
+
+					if (request.nextRollIdx == 0) {
+						this.recordWait(System.nanoTime() - request.submitNanos);
+					}
+					final Roll roll = new Roll(
+						request,
+						request.nextRollIdx++,
+						request.seeds.nextLong()
+					);
+					++client.unsentRollCount;
+					--this.queuedRollCount;
+					++this.rollingCount;
+					if (request.nextRollIdx < request.rollCount) {
+						this.requests.addLast(request);
+					} else {
+						this.notFull.signal();
+					}
+					return roll;
+				}
+
+				this.rollAvailable.await();
+			}
+			return null;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/* Record that a roll has been rolled
+	 * (and its results queued to be sent);
+	 * return whether it was the last of its request's rolls to be. */
+	boolean finish(final Roll roll) {
+		this.lock.lock();
+		try {
+			final Request request = roll.request();
+			--this.rollingCount;
+			return ++request.finishedRollCount == request.rollCount;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/* Record that the results of one of client's rolls have been sent. */
+	void sent(final Client client) {
+		this.lock.lock();
+		try {
+			if (client.unsentRollCount-- == MAX_UNSENT_ROLLS) {
+				this.rollAvailable.signalAll();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/* Drop the rolls left of client's requests
+	 * (those already being rolled still finish),
+	 * e.g., when it has disconnected. */
+	void cancel(final Client client) {
+		this.lock.lock();
+		try {
+			client.cancelled = true;
+			this.requests.removeIf(request -> {
+				if (request.client != client) {
+					return false;
+				}
+				this.queuedRollCount -= request.rollCount - request.nextRollIdx;
+				return true;
+			});
+			this.notFull.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/* Drop every request, and make take() return null from now on. */
+	void close() {
+		this.lock.lock();
+		try {
+			this.closed = true;
+			this.requests.clear();
+			this.queuedRollCount = 0;
+			this.rollAvailable.signalAll();
+			this.notFull.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	Metrics metrics() {
+		this.lock.lock();
+		try {
+			/* The upper bound of the bucket of the 99th percentile. */
+			final long p99Rank = (long)Math.ceil(this.startedRequestCount * 0.99);
+			int p99Bucket = 0;
+			long cumulativeCount = this.waitHistogram[0];
+			while (
+				cumulativeCount < p99Rank
+				&& p99Bucket < this.waitHistogram.length - 1
+			) {
+				cumulativeCount += this.waitHistogram[++p99Bucket];
+			}
+
+			return new Metrics(
+				this.requests.size(),
+				this.queuedRollCount,
+				this.rollingCount,
+				this.startedRequestCount,
+				this.startedRequestCount > 0
+					? this.waitNanosSum / 1e6 / this.startedRequestCount
+					: 0,
+				this.startedRequestCount > 0 ? (1L << p99Bucket) / 1e3 : 0,
+				this.waitNanosMax / 1e6
+			);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/* Called with this.lock held. */
+	private void recordWait(final long waitNanos) {
+		++this.startedRequestCount;
+		this.waitNanosSum += waitNanos;
+		this.waitNanosMax = Math.max(this.waitNanosMax, waitNanos);
+		final long waitMicros = waitNanos / 1000;
+		++this.waitHistogram[Long.SIZE - Long.numberOfLeadingZeros(waitMicros)];
+	}
+
+	/* A snapshot of the queue,
+	 * and of how long requests have waited for their first roll
+	 * (in milliseconds, the 99th percentile rounded up to a power of 2
+	 * microseconds). */
+	static record Metrics(
+		int queuedRequestCount,
+		long queuedRollCount,
+		int rollingCount,
+		long startedRequestCount,
+		double meanWaitMillis,
+		double p99WaitMillis,
+		double maxWaitMillis
+	) {}
+
+	/* Whoever roll requests come from and roll results go to. */
+	static class Client {
+		private int unsentRollCount;
+		private boolean cancelled;
+	}
+
+	/* rollCount rolls of diceGroupCount dice groups of a type,
+	 * seeded with successive nextLong() values
+	 * of a SplittableRandom seeded with seed,
+	 * as a headless batch's are
+	 * (so each can be replayed from its seed). */
+	static final class Request {
+		private final Client client;
+		/* The client's name for the request. */
+		private final String id;
+		private final DiceGroupType diceGroupType;
+		private final int diceGroupCount;
+		private final int rollCount;
+		private final SplittableRandom seeds;
+		/* When it was submitted (by System.nanoTime()). */
+		private long submitNanos;
+		private int nextRollIdx;
+		private int finishedRollCount;
+
+		Request(
+			final Client client,
+			final String id,
+			final DiceGroupType diceGroupType,
+			final int diceGroupCount,
+			final int rollCount,
+			final long seed
+		) {
+			if (diceGroupCount <= 0 || rollCount <= 0) {
+				throw new IllegalArgumentException("invalid roll request");
+			}
+
+			this.client = client;
+			this.id = id;
+			this.diceGroupType = diceGroupType;
+			this.diceGroupCount = diceGroupCount;
+			this.rollCount = rollCount;
+			this.seeds = new SplittableRandom(seed);
+		}
+
+		Client client() {
+			return this.client;
+		}
+
+		String id() {
+			return this.id;
+		}
+
+		DiceGroupType diceGroupType() {
+			return this.diceGroupType;
+		}
+
+		int diceGroupCount() {
+			return this.diceGroupCount;
+		}
+
+		int rollCount() {
+			return this.rollCount;
+		}
+	}
+
+	/* The rollIdx-th roll of a request. */
+	static record Roll(Request request, int rollIdx, long seed) {}
+}
@@ -0,0 +1,624 @@
+package com.mygame;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Serves rolls over plain TCP, on the loopback address only,
+ * to any number of clients at once.
+ * The protocol is line-based (UTF-8, a request or reply per line).
+ * A client sends roll requests,
+ *     ID COUNT ROLLS SEED TYPE
+ * e.g., "a 10 1000 42 4d6kh3",
+ * for ROLLS rolls of COUNT dice groups of TYPE
+ * (a built-in type's name or dice notation, to the end of the line),
+ * seeded from SEED as a headless batch is,
+ * and named ID (any word, to tell the replies apart);
+ * it may send more requests without waiting for the replies.
+ * For each roll, once all of its dice have settled, the server replies
+ *     ID ROLL_IDX SEED RESULT...
+ * with the roll's index in its request,
+ * its seed (to replay it with --replay)
+ * and its dice-group roll results, in order, each as
+ *     DISPLAY=NUMERIC
+ * its display value (never containing whitespace or '=')
+ * and its numeric value (a decimal integer), e.g., "00=100" for a D100;
+ * and after the last of a request's rolls,
+ *     ID DONE ROLLS
+ * A request that cannot be rolled,
+ * e.g., one of more than MAX_DICE_PER_ROLL dice per roll,
+ * is replied to with
+ *     ID ERROR MESSAGE
+ * instead.
+ * A client can also ask for the server's metrics with
+ *     ID STATS
+ * (replied to with ID STATS and describeMetrics()),
+ * and for the exact odds of a roll with
+ *     ID ODDS COUNT TOTAL TYPE
+ * (replied to with
+ *     ID ODDS P_AT_LEAST MEAN SD MIN MAX
+ * for the total of COUNT dice groups of TYPE,
+ * P_AT_LEAST being the probability of at least TOTAL),
+ * worked out on the client's reader thread
+ * from distributions the server caches for all clients.
+ * Replies to different requests are interleaved,
+ * and a request's rolls are replied to in the order they finish.
+ * Once a client has shut down its output,
+ * the rest of its rolls are sent and the connection closed.
+ *
+ * The rolls are rolled by a fixed number of workers,
+ * platform threads each owning a HeadlessRoller
+ * (which rolls in a physics space of its own, fresh for every roll,
+ * with die bodies it pools),
+ * which take them from a RollScheduler,
+ * so small requests are not held up behind big ones.
+ * Each client is read from and written to by virtual threads of its own,
+ * which cost next to nothing while the client is idle,
+ * so thousands of clients can stay connected,
+ * and the workers never wait on a client.
+ * The clients and the workers only meet in bounded queues:
+ * the scheduler's, of at most MAX_QUEUED_REQUESTS requests,
+ * and each client's queue of replies.
+ * A client with MAX_PENDING_REQUESTS requests not yet replied to in full
+ * is not read from until one is
+ * (its requests back up in the socket until the client blocks),
+ * and one that does not read its replies
+ * is not rolled for until it does.
+ * The metrics are also logged to stderr
+ * every METRICS_INTERVAL_MILLIS while the server is busy.
+ * Every dice group rolled is appended to the roll journal, if given,
+ * as it settles
+ * (by whichever worker rolled it, one worker at a time:
+ * appending is a handful of stores, next to a roll's many steps). */
+final class RollServer implements AutoCloseable {
+	/* How many requests a client may have unfinished at once. */
+	static final int MAX_PENDING_REQUESTS = 64;
+	/* How many requests, from all clients, may wait to be rolled at once;
+	 * a client's further requests wait to be queued. */
+	static final int MAX_QUEUED_REQUESTS = 4096;
+	/* How many dice a roll may have in all
+	 * (e.g., 40 dice groups of 4d6kh3 have 160),
+	 * so that no request makes a worker step an outsized space. */
+	static final int MAX_DICE_PER_ROLL = Main.DIE_COUNT_MAX_INSTANCED;
+	/* How many connections may wait to be accepted. */
+	private static final int ACCEPT_BACKLOG = 1024;
+	private static final long METRICS_INTERVAL_MILLIS = 10_000;
+	/* A client's queued replies:
+	 * its unsent roll results (at most MAX_UNSENT_ROLLS),
+	 * the last reply to each of its requests
+	 * (which holds on to the request's permit until sent)
+	 * and END. */
+	private static final int REPLY_QUEUE_CAPACITY =
+		RollScheduler.MAX_UNSENT_ROLLS + MAX_PENDING_REQUESTS + 1;
+	/* Ends a client's replies. */
+	private static final Reply END = new Reply(null, false, false);
+
+	private final ServerSocket serverSocket;
+	private final RollScheduler scheduler;
+	private final List<Thread> workers;
+	private final Thread metricsLogger;
+	private final Set<Connection> connections;
+	/* Numbers the connections (for naming their threads). */
+	private final AtomicLong connectionCount;
+	/* What the dice collide as. */
+	private final CollisionShapeStrategy collisionShapeStrategy;
+	/* The built-in types, for compiling request types. */
+	private final DiceGroupType[] diceGroupTypes;
+	/* Answers ODDS requests, keeping their distributions. */
+	private final Odds odds;
+	/* Guards this.journal, which the workers all append to. */
+	private final Object journalLock;
+	/* Where every roll is journaled; null if none are. */
+	private RollJournal journal;
+
+	RollServer(
+		final int port,
+		final int workerCount,
+		final CollisionShapeStrategy collisionShapeStrategy,
+		final DiceGroupType[] diceGroupTypes,
+		final RollJournal journal
+	) throws IOException {
+		if (workerCount <= 0) {
+			throw new IllegalArgumentException("invalid worker count");
+		}
+
+		this.serverSocket = new ServerSocket(
+			port,
+			ACCEPT_BACKLOG,
+			InetAddress.getLoopbackAddress()
+		);
+		this.scheduler = new RollScheduler(MAX_QUEUED_REQUESTS);
+		this.workers = new ArrayList<>(workerCount);
+		this.connections = ConcurrentHashMap.newKeySet();
+		this.connectionCount = new AtomicLong();
+		this.collisionShapeStrategy = collisionShapeStrategy;
+		this.diceGroupTypes = diceGroupTypes;
+		this.odds = new Odds();
+		this.journalLock = new Object();
+		this.journal = journal;
+
+		for (int i = 0; i < workerCount; ++i) {
+			final Thread worker = new Thread(
+				this::runWorker,
+				String.format("roll-server-worker-%d", i)
+			);
+			worker.setDaemon(true);
+			this.workers.add(worker);
+			worker.start();
+		}
+		this.metricsLogger = Thread.ofVirtual()
+			.name("roll-server-metrics")
+			.start(this::logMetrics);
+	}
+
+	SocketAddress address() {
+		return this.serverSocket.getLocalSocketAddress();
+	}
+
+	int workerCount() {
+		return this.workers.size();
+	}
+
+	/* Accept clients until the server is closed. */
+	void serve() throws IOException {
+		while (!this.serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = this.serverSocket.accept();
+			} catch (IOException e) {
+				if (this.serverSocket.isClosed()) {
+					return;
+				}
+				throw e;
+			}
+			/* Replies are flushed as soon as there are no more to send. */
+			socket.setTcpNoDelay(true);
+
+			final Connection connection =
+				new Connection(socket, this.connectionCount.incrementAndGet());
+			this.connections.add(connection);
+			connection.start();
+		}
+	}
+
+	/* E.g., "3 clients, 2 requests (1200 rolls) queued,
+	 * 8 of 8 workers rolling, 17 replies queued;
+	 * request wait: mean 1.52 ms, p99 < 4.10 ms, max 9.87 ms
+	 * (152 requests)". */
+	String describeMetrics() {
+		final RollScheduler.Metrics metrics = this.scheduler.metrics();
+		int queuedReplyCount = 0;
+		for (final Connection connection : this.connections) {
+			queuedReplyCount += connection.replies.size();
+		}
+
+		return String.format(
+			"%d clients, %d requests (%d rolls) queued, %d of %d workers rolling, %d replies queued; request wait: mean %.2f ms, p99 < %.2f ms, max %.2f ms (%d requests)",
+			this.connections.size(),
+			metrics.queuedRequestCount(),
+			metrics.queuedRollCount(),
+			metrics.rollingCount(),
+			this.workers.size(),
+			queuedReplyCount,
+			metrics.meanWaitMillis(),
+			metrics.p99WaitMillis(),
+			metrics.maxWaitMillis(),
+			metrics.startedRequestCount()
+		);
+	}
+
+	/* Stop accepting clients, disconnect those connected
+	 * and stop the workers, once they have finished their rolls. */
+	@Override
+	public void close() {
+		try {
+			this.serverSocket.close();
+		} catch (IOException e) {}
+		this.metricsLogger.interrupt();
+		this.scheduler.close();
+		for (final Connection connection : this.connections) {
+			connection.close();
+		}
+
+		try {
+			for (final Thread worker : this.workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* Every roll taken is replied to and finished,
+	 * with an ERROR if rolling it throws anything at all
+	 * (or if the roller could not even be built),
+	 * so no request is left without its DONE
+	 * and the scheduler's counts stay true. */
+	private void runWorker() {
+		HeadlessRoller roller = null;
+		Throwable rollerFailure = null;
+		try {
+			/* The physics space must be created on the thread that steps it. */
+			roller = new HeadlessRoller(this.collisionShapeStrategy);
+		} catch (Throwable e) {
+			rollerFailure = e;
+		}
+		/* The roller adds to an aggregator, which nothing here reads. */
+		final RollAggregator aggregator = new RollAggregator();
+		try {
+			RollScheduler.Roll roll;
+			while ((roll = this.scheduler.take()) != null) {
+				final RollScheduler.Request request = roll.request();
+				final long seed = roll.seed();
+				/* Every client of this.scheduler is a Connection. */
+				final Connection connection = (Connection)request.client();
+
+				final StringBuilder reply = new StringBuilder(
+					String.format(
+						"%s %d %d",
+						request.id(),
+						roll.rollIdx(),
+						roll.seed()
+					)
+				);
+				try {
+					if (rollerFailure != null) {
+						throw rollerFailure;
+					}
+					roller.roll(
+						request.diceGroupType(),
+						request.diceGroupCount(),
+						roll.seed(),
+						aggregator,
+						diceGroupRoll -> {
+							reply.append(' ')
+								.append(diceGroupRoll.result().displayValue())
+								.append('=')
+								.append(diceGroupRoll.result().numericValue());
+							this.journal(
+								request.diceGroupType(),
+								diceGroupRoll,
+								seed
+							);
+						}
+					);
+				} catch (Throwable e) {
+					/* Including Errors (from native Bullet, say),
+					 * which would otherwise end the worker silently. */
+					reply.setLength(0);
+					reply.append(
+						String.format(
+							"%s ERROR roll %d failed: %s",
+							request.id(),
+							roll.rollIdx(),
+							/* Kept to the one line. */
+							e.toString().replaceAll("\\R", " ")
+						)
+					);
+				}
+				aggregator.reset();
+
+				connection.reply(new Reply(reply.toString(), true, false));
+				if (this.scheduler.finish(roll)) {
+					connection.reply(
+						new Reply(
+							String.format(
+								"%s DONE %d",
+								request.id(),
+								request.rollCount()
+							),
+							false,
+							true
+						)
+					);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (roller != null) {
+				roller.destroy();
+			}
+		}
+	}
+
+	/* Append a dice group's roll, part of the roll with the given seed,
+	 * to the journal, if there is one,
+	 * for one worker at a time;
+	 * if that fails, say why and stop journaling
+	 * (the journal is closed by whoever opened it). */
+	private void journal(
+		final DiceGroupType diceGroupType,
+		final DiceGroupRoll diceGroupRoll,
+		final long seed
+	) {
+		synchronized (this.journalLock) {
+			if (this.journal == null) {
+				return;
+			}
+			try {
+				this.journal.append(
+					diceGroupType,
+					diceGroupRoll.faces(),
+					diceGroupRoll.result(),
+					seed,
+					System.currentTimeMillis(),
+					diceGroupRoll.settleTime()
+				);
+			} catch (IOException e) {
+				System.err.printf("stopped journaling rolls: %s%n", e.getMessage());
+				this.journal = null;
+			}
+		}
+	}
+
+	/* Log the metrics every METRICS_INTERVAL_MILLIS
+	 * in which a request was started or was waiting,
+	 * until interrupted. */
+	private void logMetrics() {
+		long startedRequestCount = 0;
+		try {
+			while (true) {
+				Thread.sleep(METRICS_INTERVAL_MILLIS);
+
+				final RollScheduler.Metrics metrics = this.scheduler.metrics();
+				if (
+					metrics.startedRequestCount() != startedRequestCount
+					|| metrics.queuedRequestCount() > 0
+				) {
+					System.err.println(this.describeMetrics());
+				}
+				startedRequestCount = metrics.startedRequestCount();
+			}
+		} catch (InterruptedException e) {
+			/* Closed. */
+		}
+	}
+
+	/* A line to send a client,
+	 * whether it has the results of a roll
+	 * and whether it is the last reply to a request. */
+	private static record Reply(String line, boolean roll, boolean last) {}
+
+	/* A connected client. */
+	private final class Connection extends RollScheduler.Client {
+		private final Socket socket;
+		/* The replies to send, in order. */
+		private final BlockingQueue<Reply> replies;
+		/* A permit per request that may still be made;
+		 * a request's is given back once its last reply is sent. */
+		private final Semaphore requestPermits;
+		private final Thread reader;
+		private final Thread writer;
+
+		Connection(final Socket socket, final long number) {
+			this.socket = socket;
+			this.replies = new ArrayBlockingQueue<>(REPLY_QUEUE_CAPACITY);
+			this.requestPermits = new Semaphore(MAX_PENDING_REQUESTS);
+			this.reader = Thread.ofVirtual()
+				.name(String.format("roll-server-reader-%d", number))
+				.unstarted(this::readRequests);
+			this.writer = Thread.ofVirtual()
+				.name(String.format("roll-server-writer-%d", number))
+				.unstarted(this::writeReplies);
+		}
+
+		void start() {
+			this.reader.start();
+			this.writer.start();
+		}
+
+		/* Queue a reply;
+		 * there is always room (see REPLY_QUEUE_CAPACITY),
+		 * so this never blocks. */
+		void reply(final Reply reply) {
+			this.replies.add(reply);
+		}
+
+		/* Drop the connection, and whatever it has left to roll. */
+		void close() {
+			RollServer.this.scheduler.cancel(this);
+			RollServer.this.connections.remove(this);
+			try {
+				this.socket.close();
+			} catch (IOException e) {}
+			this.reader.interrupt();
+			this.writer.interrupt();
+		}
+
+		private void readRequests() {
+			try {
+				/* Not closed when done reading,
+				 * since that would close the socket. */
+				final BufferedReader in = new BufferedReader(
+					new InputStreamReader(
+						this.socket.getInputStream(),
+						StandardCharsets.UTF_8
+					)
+				);
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.isBlank()) {
+						continue;
+					}
+
+					this.requestPermits.acquire();
+					final String[] fields = line.strip().split("\\s+", 5);
+					if (fields.length == 2 && fields[1].equals("STATS")) {
+						this.reply(
+							new Reply(
+								String.format(
+									"%s STATS %s",
+									fields[0],
+									RollServer.this.describeMetrics()
+								),
+								false,
+								true
+							)
+						);
+						continue;
+					}
+
+					try {
+						if (fields.length > 1 && fields[1].equals("ODDS")) {
+							this.reply(new Reply(this.odds(fields), false, true));
+							continue;
+						}
+						RollServer.this.scheduler.submit(this.parseRequest(fields));
+					} catch (IllegalArgumentException e) {
+						this.reply(
+							new Reply(
+								String.format("%s ERROR %s", fields[0], e.getMessage()),
+								false,
+								true
+							)
+						);
+					}
+				}
+
+				/* The client has made its last request;
+				 * wait for them all to finish. */
+				this.requestPermits.acquire(MAX_PENDING_REQUESTS);
+			} catch (IOException e) {
+				/* Disconnected. */
+			} catch (InterruptedException e) {
+				/* Closed. */
+			} finally {
+				this.replies.add(END);
+			}
+		}
+
+		/* ID COUNT ROLLS SEED TYPE, split into (at most 5) fields. */
+		private RollScheduler.Request parseRequest(final String[] fields) {
+			if (fields.length < 5) {
+				throw new IllegalArgumentException(
+					"usage: ID COUNT ROLLS SEED TYPE"
+				);
+			}
+
+			final int diceGroupCount = HeadlessBatch.parsePositiveInt(fields[1]);
+			if (diceGroupCount > Main.DICE_GROUP_COUNT_MAX_INSTANCED) {
+				throw new IllegalArgumentException(
+					String.format(
+						"too many dice groups: %d (at most %d)",
+						diceGroupCount,
+						Main.DICE_GROUP_COUNT_MAX_INSTANCED
+					)
+				);
+			}
+
+			final DiceGroupType diceGroupType =
+				DiceNotation.compile(fields[4], RollServer.this.diceGroupTypes);
+			final int dieCount = diceGroupType.dieTypes().length * diceGroupCount;
+			if (dieCount > MAX_DICE_PER_ROLL) {
+				throw new IllegalArgumentException(
+					String.format(
+						"too many dice per roll: %d (at most %d)",
+						dieCount,
+						MAX_DICE_PER_ROLL
+					)
+				);
+			}
+
+			return new RollScheduler.Request(
+				this,
+				fields[0],
+				diceGroupType,
+				diceGroupCount,
+				HeadlessBatch.parsePositiveInt(fields[2]),
+				HeadlessBatch.parseLong(fields[3])
+			);
+		}
+
+		/* ID ODDS COUNT TOTAL TYPE, split into (at most 5) fields:
+		 * the reply to it. */
+		private String odds(final String[] fields) {
+			if (fields.length < 5) {
+				throw new IllegalArgumentException(
+					"usage: ID ODDS COUNT TOTAL TYPE"
+				);
+			}
+
+			final int diceGroupCount = HeadlessBatch.parsePositiveInt(fields[2]);
+			final int total;
+			try {
+				total = Integer.parseInt(fields[3]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(
+					String.format("not an integer: %s", fields[3])
+				);
+			}
+			final DiceGroupType diceGroupType =
+				DiceNotation.compile(fields[4], RollServer.this.diceGroupTypes);
+			final Distribution distribution =
+				RollServer.this.odds.distribution(diceGroupType, diceGroupCount);
+
+			return String.format(
+				"%s ODDS %.6g %.3f %.3f %d %d",
+				fields[0],
+				distribution.atLeast(total),
+				distribution.mean(),
+				distribution.standardDeviation(),
+				distribution.min(),
+				distribution.max()
+			);
+		}
+
+		private void writeReplies() {
+			try {
+				final Writer out = new BufferedWriter(
+					new OutputStreamWriter(
+						this.socket.getOutputStream(),
+						StandardCharsets.UTF_8
+					)
+				);
+				while (true) {
+					final Reply reply = this.replies.take();
+					if (reply == END) {
+						break;
+					}
+
+					out.write(reply.line());
+					out.write('\n');
+					if (reply.roll()) {
+						RollServer.this.scheduler.sent(this);
+					}
+					if (reply.last()) {
+						this.requestPermits.release();
+					}
+					if (this.replies.isEmpty()) {
+						out.flush();
+					}
+				}
+				out.flush();
+			} catch (IOException e) {
+				/* Disconnected. */
+			} catch (InterruptedException e) {
+				/* Closed. */
+			} finally {
+				this.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.mygame;
+
+/* A roll server, as given on the command line:
+ * --serve [PORT [WORKERS]],
+ * where PORT is the port to listen on (on the loopback address only)
+ * and WORKERS is how many physics spaces to roll in, in parallel. */
+record RollServerConfig(int port, int workerCount) {
+	static final String ARG = "--serve";
+	static final int DEFAULT_PORT = 7890;
+
+	static RollServerConfig parse(final String[] args) {
+		if (args.length < 1 || args.length > 3 || !args[0].equals(ARG)) {
+			throw new IllegalArgumentException(
+				String.format("usage: %s [PORT [WORKERS]]", ARG)
+			);
+		}
+
+		final int portMax = 65535;
+		final int port = args.length > 1
+			? HeadlessBatch.parsePositiveInt(args[1])
+			: DEFAULT_PORT;
+		if (port > portMax) {
+			throw new IllegalArgumentException(
+				String.format("not a port: %s", args[1])
+			);
+		}
+		final int workerCount = args.length > 2
+			? HeadlessBatch.parsePositiveInt(args[2])
+			: Runtime.getRuntime().availableProcessors();
+
+		return new RollServerConfig(port, workerCount);
+	}
+}
@@ -0,0 +1,241 @@
+package com.mygame;
+
+import java.util.Arrays;
+
+import java.util.random.RandomGenerator;
+
+import com.jme3.bullet.objects.PhysicsRigidBody;
+
+import com.jme3.math.Vector3f;
+
+/* Decides, die by die, when rolled dice have come to rest.
+ * A die has settled once Bullet has put it to sleep,
+ * or once its own approximate linear and angular speeds
+ * have both stayed below a cutoff
+ * for STILL_TIME_CUTOFF seconds of simulated time.
+ * A settled die is put to sleep,
+ * so it costs the solver nothing while it lies there;
+ * unlike a kinematic (frozen) body,
+ * a sleeping one still gives way as any other would
+ * when a moving die hits it
+ * (and is then no longer settled),
+ * so the dice still settling bounce off it as physics has it.
+ * Only once the whole roll has been read
+ * are the dice frozen (see freezeAll).
+ * A die that escapes the dice tray before settling
+ * is rolled back into it (see rerollEscaped).
+ * Shared by the interactive application and the headless rollers,
+ * so that both read the dice at the same point in their motion.
+ * Updating allocates nothing
+ * (once the detector has seen as many dice as it will see). */
+final class SettleDetector {
+	private static final float SPEED_CUTOFF = 0.05f;
+	private static final float STILL_TIME_CUTOFF = 0.25f;
+	/* Longer than Bullet waits at rest before putting a body to sleep
+	 * (2 seconds), so that a settled die sleeps at the next step,
+	 * once whatever it rests on has come to rest too. */
+	private static final float SLEEP_DEACTIVATION_TIME = 10;
+
+	/* Scratch vectors for reading velocities and locations into. */
+	private final Vector3f v, w, p;
+	/* Per die (indexed as in the DieBodyRegistry):
+	 * how long it has been continuously (almost) motionless. */
+	private float[] stillTimes;
+	/* Per die: whether it has settled. */
+	private boolean[] settled;
+	private int settledCount;
+	/* Per die: how many times it has been rolled again
+	 * for having settled cocked. */
+	private int[] rerollCounts;
+	private int rerollCount;
+	/* How many times a die has been rolled back into the tray. */
+	private int escapeCount;
+
+	SettleDetector() {
+		this.v = new Vector3f();
+		this.w = new Vector3f();
+		this.p = new Vector3f();
+
+		final int initialCapacity = 16;
+		this.stillTimes = new float[initialCapacity];
+		this.settled = new boolean[initialCapacity];
+		this.rerollCounts = new int[initialCapacity];
+	}
+
+	/* Forget all dice, for a new roll. */
+	void reset() {
+		Arrays.fill(this.stillTimes, 0);
+		Arrays.fill(this.settled, false);
+		this.settledCount = 0;
+		Arrays.fill(this.rerollCounts, 0);
+		this.rerollCount = 0;
+		this.escapeCount = 0;
+	}
+
+	/* Advance the detector by dt seconds of simulated time,
+	 * settling (and putting to sleep) any die that has come to rest,
+	 * unsettling any settled die that has been knocked moving again,
+	 * and return how many of the dice have settled. */
+	int update(final DieBodyRegistry dieBodies, final float dt) {
+		final int n = dieBodies.size();
+		this.ensureCapacity(n);
+
+		for (int i = 0; i < n; ++i) {
+			final PhysicsRigidBody dieBody = dieBodies.get(i);
+			if (this.settled[i]) {
+				if (dieBody.isActive() && this.isMoving(dieBody)) {
+					this.settled[i] = false;
+					--this.settledCount;
+					this.stillTimes[i] = 0;
+				}
+				continue;
+			}
+
+			if (this.isMoving(dieBody)) {
+				this.stillTimes[i] = 0;
+			} else {
+				this.stillTimes[i] += dt;
+			}
+
+			if (!dieBody.isActive() || this.stillTimes[i] >= STILL_TIME_CUTOFF) {
+				this.settled[i] = true;
+				++this.settledCount;
+				/* Bullet zeroes its velocity as it puts it to sleep. */
+				dieBody.setDeactivationTime(SLEEP_DEACTIVATION_TIME);
+			}
+		}
+
+		return this.settledCount;
+	}
+
+	/* Roll every unsettled die that has left the dice tray
+	 * (over a wall, or off the ground) back into it,
+	 * drawing from random,
+	 * and return how many there were.
+	 * Called before update,
+	 * so that no die settles outside the tray.
+	 * (A settled die knocked out of it
+	 * is unsettled by the next update first.) */
+	int rerollEscaped(
+		final DieBodyRegistry dieBodies,
+		final RandomGenerator random
+	) {
+		final int n = dieBodies.size();
+		this.ensureCapacity(n);
+		int escapedCount = 0;
+		for (int i = 0; i < n; ++i) {
+			if (this.settled[i]) {
+				continue;
+			}
+
+			final PhysicsRigidBody dieBody = dieBodies.get(i);
+			if (isInTray(dieBody.getPhysicsLocation(this.p))) {
+				continue;
+			}
+
+			this.stillTimes[i] = 0;
+			++escapedCount;
+
+			dieBody.setLinearVelocity(Vector3f.ZERO);
+			dieBody.setAngularVelocity(Vector3f.ZERO);
+			dieBody.activate();
+			Main.rollDie(dieBody, random);
+		}
+		this.escapeCount += escapedCount;
+
+		return escapedCount;
+	}
+
+	/* How many times a die has been rolled back into the tray
+	 * since the reset. */
+	int escapeCount() {
+		return this.escapeCount;
+	}
+
+	boolean isSettled(final int dieIdx) {
+		return dieIdx < this.settled.length && this.settled[dieIdx];
+	}
+
+	/* Whether every die with index in [fromIdx, toIdx) has settled. */
+	boolean isSettled(final int fromIdx, final int toIdx) {
+		for (int i = fromIdx; i < toIdx; ++i) {
+			if (!this.isSettled(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/* Wake a die that has settled cocked
+	 * and roll it again from where it lies, drawing from random. */
+	void reroll(
+		final PhysicsRigidBody dieBody,
+		final int dieIdx,
+		final RandomGenerator random
+	) {
+		this.settled[dieIdx] = false;
+		--this.settledCount;
+		this.stillTimes[dieIdx] = 0;
+		++this.rerollCounts[dieIdx];
+		++this.rerollCount;
+
+		dieBody.activate();
+		Main.kickDie(dieBody, random);
+	}
+
+	/* Freeze every die (make it kinematic),
+	 * once every dice group of the roll has been read,
+	 * so that none is knocked off the face it was read on
+	 * by one still coming to rest. */
+	void freezeAll(final DieBodyRegistry dieBodies) {
+		for (int i = 0; i < dieBodies.size(); ++i) {
+			final PhysicsRigidBody dieBody = dieBodies.get(i);
+			dieBody.setLinearVelocity(Vector3f.ZERO);
+			dieBody.setAngularVelocity(Vector3f.ZERO);
+			dieBody.setKinematic(true);
+		}
+	}
+
+	/* How many times the die has been rolled again since the reset. */
+	int rerollCount(final int dieIdx) {
+		return dieIdx < this.rerollCounts.length
+			? this.rerollCounts[dieIdx]
+			: 0;
+	}
+
+	/* How many times any die has been rolled again since the reset. */
+	int rerollCount() {
+		return this.rerollCount;
+	}
+
+	/* Make room for n dice. */
+	private void ensureCapacity(final int n) {
+		if (n > this.settled.length) {
+			final int capacity = Math.max(n, 2 * this.settled.length);
+			this.stillTimes = Arrays.copyOf(this.stillTimes, capacity);
+			this.settled = Arrays.copyOf(this.settled, capacity);
+			this.rerollCounts = Arrays.copyOf(this.rerollCounts, capacity);
+		}
+	}
+
+	/* Whether a die at the given location is inside the walls
+	 * and above the ground. */
+	private static boolean isInTray(final Vector3f location) {
+		final float xzAbsMax = Main.DICE_TRAY_WIDTH / 2;
+		final float yMin = -Main.DICE_TRAY_WALL_THICKNESS;
+
+		return Math.abs(location.x) < xzAbsMax
+			&& Math.abs(location.z) < xzAbsMax
+			&& location.y > yMin;
+	}
+
+	/* Whether a die's approximate linear or angular speed
+	 * is at or above the cutoff. */
+	private boolean isMoving(final PhysicsRigidBody dieBody) {
+		return Main.vectorLengthApprox(dieBody.getLinearVelocity(this.v))
+				>= SPEED_CUTOFF
+			|| Main.vectorLengthApprox(dieBody.getAngularVelocity(this.w))
+				>= SPEED_CUTOFF;
+	}
+}
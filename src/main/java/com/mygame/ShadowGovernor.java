@@ -0,0 +1,217 @@
+package com.mygame;
+
+import com.jme3.asset.AssetManager;
+
+import com.jme3.light.DirectionalLight;
+
+import com.jme3.renderer.ViewPort;
+
+import com.jme3.shadow.DirectionalLightShadowRenderer;
+import com.jme3.shadow.EdgeFilteringMode;
+
+/* Holds the frame time to a budget by trading shadow quality for it:
+ * when frames have been slower than the budget for a while,
+ * the shadows step down a quality level
+ * (smaller shadow map, fewer splits, cheaper edge filtering),
+ * and when frames have been well within it for longer,
+ * they step back up.
+ * The shadow map size and split count are fixed
+ * when a DirectionalLightShadowRenderer is created,
+ * so changing level replaces the renderer.
+ * Optionally, shadows are dropped entirely while dice are moving
+ * (when the physics is busiest)
+ * and restored once they have all settled. */
+final class ShadowGovernor {
+	static final String ARG_PREFIX = "--frame-budget=";
+	/* Milliseconds. */
+	static final float DEFAULT_FRAME_BUDGET = 1000f / 60;
+
+	/* From best to cheapest. */
+	private static final int[] MAP_SIZES = { 2048, 2048, 1024, 1024, 512 };
+	private static final int[] SPLIT_COUNTS = { 4, 3, 2, 1, 1 };
+	private static final EdgeFilteringMode[] EDGE_FILTERING_MODES = {
+		EdgeFilteringMode.PCFPOISSON,
+		EdgeFilteringMode.PCF4,
+		EdgeFilteringMode.PCF4,
+		EdgeFilteringMode.Bilinear,
+		EdgeFilteringMode.Nearest,
+	};
+
+	/* Frames slower than the budget by this factor, on average,
+	 * for STEP_DOWN_TIME seconds step the quality down;
+	 * frames faster than this fraction of it
+	 * for STEP_UP_TIME seconds step it up.
+	 * Stepping up is slower to kick in,
+	 * so that the level does not flip back and forth. */
+	private static final float STEP_DOWN_FACTOR = 1.15f;
+	private static final float STEP_UP_FACTOR = 0.6f;
+	private static final float STEP_DOWN_TIME = 1;
+	private static final float STEP_UP_TIME = 3;
+	/* Seconds over which frame times are averaged. */
+	private static final float AVERAGING_TIME = 0.5f;
+
+	private final AssetManager assetManager;
+	private final ViewPort viewPort;
+	private final DirectionalLight light;
+	private final float shadowIntensity;
+	/* 0 for the renderer's default. */
+	private final float shadowZExtend;
+	/* Seconds per frame. */
+	private final float frameBudget;
+
+	/* The current quality level (an index into MAP_SIZES etc.)
+	 * and its renderer, null while shadows are dropped. */
+	private int level;
+	private DirectionalLightShadowRenderer renderer;
+	/* Whether to drop shadows while dice are moving. */
+	private boolean dropWhileMoving;
+	/* Exponential moving average of the frame time (seconds). */
+	private float averageFrameTime;
+	/* How long frames have been over (or well under) budget. */
+	private float overBudgetTime;
+	private float underBudgetTime;
+
+	ShadowGovernor(
+		final AssetManager assetManager,
+		final ViewPort viewPort,
+		final DirectionalLight light,
+		final float shadowIntensity,
+		final float shadowZExtend,
+		final float frameBudgetMillis
+	) {
+		this.assetManager = assetManager;
+		this.viewPort = viewPort;
+		this.light = light;
+		this.shadowIntensity = shadowIntensity;
+		this.shadowZExtend = shadowZExtend;
+		this.frameBudget = frameBudgetMillis / 1000;
+
+		this.level = 0;
+		this.averageFrameTime = this.frameBudget;
+		this.showShadows();
+	}
+
+	/* Called once per frame, with the frame's time (seconds)
+	 * and whether any dice are still moving. */
+	void update(final float tpf, final boolean diceMoving) {
+		if (this.dropWhileMoving && diceMoving) {
+			this.hideShadows();
+			return;
+		}
+		if (this.renderer == null) {
+			this.showShadows();
+			return;
+		}
+
+		final float alpha = Math.min(1, tpf / AVERAGING_TIME);
+		this.averageFrameTime += alpha * (tpf - this.averageFrameTime);
+
+		if (this.averageFrameTime > STEP_DOWN_FACTOR * this.frameBudget) {
+			this.overBudgetTime += tpf;
+			this.underBudgetTime = 0;
+		} else if (
+			this.averageFrameTime < STEP_UP_FACTOR * this.frameBudget
+		) {
+			this.underBudgetTime += tpf;
+			this.overBudgetTime = 0;
+		} else {
+			this.overBudgetTime = 0;
+			this.underBudgetTime = 0;
+		}
+
+		if (
+			this.overBudgetTime >= STEP_DOWN_TIME
+			&& this.level < MAP_SIZES.length - 1
+		) {
+			this.setLevel(this.level + 1);
+		} else if (this.underBudgetTime >= STEP_UP_TIME && this.level > 0) {
+			this.setLevel(this.level - 1);
+		}
+	}
+
+	boolean dropWhileMoving() {
+		return this.dropWhileMoving;
+	}
+
+	void setDropWhileMoving(final boolean dropWhileMoving) {
+		this.dropWhileMoving = dropWhileMoving;
+	}
+
+	/* E.g., "2048 x 4 splits, PCFPOISSON", or "off". */
+	String describe() {
+		if (this.renderer == null) {
+			return "off";
+		}
+
+		return String.format(
+			"%d x %d splits, %s",
+			MAP_SIZES[this.level],
+			SPLIT_COUNTS[this.level],
+			EDGE_FILTERING_MODES[this.level]
+		);
+	}
+
+	private void setLevel(final int level) {
+		this.level = level;
+		this.hideShadows();
+		this.showShadows();
+	}
+
+	private void showShadows() {
+		if (this.renderer != null) {
+			return;
+		}
+
+		final DirectionalLightShadowRenderer renderer =
+			new DirectionalLightShadowRenderer(
+				this.assetManager,
+				MAP_SIZES[this.level],
+				SPLIT_COUNTS[this.level]
+			);
+		renderer.setLight(this.light);
+		renderer.setEdgeFilteringMode(EDGE_FILTERING_MODES[this.level]);
+		renderer.setShadowIntensity(this.shadowIntensity);
+		renderer.setEnabledStabilization(true);
+		renderer.setShadowZExtend(this.shadowZExtend);
+		this.viewPort.addProcessor(renderer);
+		this.renderer = renderer;
+
+		/* The first frames with a new renderer are slow
+		 * (its shadow maps are allocated then),
+		 * so start judging it afresh. */
+		this.averageFrameTime = this.frameBudget;
+		this.overBudgetTime = 0;
+		this.underBudgetTime = 0;
+	}
+
+	private void hideShadows() {
+		if (this.renderer == null) {
+			return;
+		}
+
+		/* Also cleans the renderer up, freeing its shadow maps. */
+		this.viewPort.removeProcessor(this.renderer);
+		this.renderer = null;
+	}
+
+	/* Parse "--frame-budget=MS". */
+	static float parseFrameBudget(final String arg) {
+		if (!arg.startsWith(ARG_PREFIX)) {
+			throw new IllegalArgumentException(
+				String.format("not a %sMS argument: %s", ARG_PREFIX, arg)
+			);
+		}
+
+		final String millis = arg.substring(ARG_PREFIX.length());
+		try {
+			final float frameBudget = Float.parseFloat(millis);
+			if (frameBudget > 0) {
+				return frameBudget;
+			}
+		} catch (NumberFormatException e) {}
+
+		throw new IllegalArgumentException(
+			String.format("invalid frame budget: %s", millis)
+		);
+	}
+}
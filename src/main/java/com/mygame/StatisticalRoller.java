@@ -0,0 +1,92 @@
+package com.mygame;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import java.util.function.Consumer;
+
+/* Rolls dice without simulating them,
+ * by sampling each die's face from its die type's face distribution
+ * (uniform for die types that have not been calibrated).
+ * The faces go through the dice-group type's evaluator
+ * just as physically read faces do.
+ * A roller must only be used by one thread at a time. */
+final class StatisticalRoller {
+	private final Map<String, FaceDistribution> distributions;
+	private final SplittableRandom rng;
+	/* Per dice-group type: the distribution of each of its dice. */
+	private final Map<DiceGroupType, FaceDistribution[]> groupDistributions;
+	/* Per die type: its distribution. */
+	private final Map<DieType, FaceDistribution> dieDistributions;
+	/* Rolls the dice that dice notation rolls again,
+	 * from the same distributions. */
+	private final FaceRoller faceRoller;
+
+	StatisticalRoller(
+		final Map<String, FaceDistribution> distributions,
+		final long seed
+	) {
+		this.distributions = distributions;
+		this.rng = new SplittableRandom(seed);
+		this.groupDistributions = new IdentityHashMap<>();
+		this.dieDistributions = new IdentityHashMap<>();
+		this.faceRoller = dieType -> {
+			final FaceDistribution dist = this.dieDistributions
+				.computeIfAbsent(dieType, this::distribution);
+			return dieType.faces()[dist.sample(this.rng)].numericValue();
+		};
+	}
+
+	/* Roll diceGroupCount dice groups of the given type,
+	 * adding each dice group's roll result to aggregator
+	 * and passing the dice group's roll to sink
+	 * (with faces that are reused for the next one). */
+	void roll(
+		final DiceGroupType diceGroupType,
+		final int diceGroupCount,
+		final RollAggregator aggregator,
+		final Consumer<? super DiceGroupRoll> sink
+	) {
+		final DieType[] dieTypes = diceGroupType.dieTypes();
+		final FaceDistribution[] dists = this.groupDistributions
+			.computeIfAbsent(diceGroupType, this::lookUpDistributions);
+
+		/* Reused from one dice group to the next;
+		 * neither the aggregator nor the evaluator keeps them. */
+		final DieFace[] faces = new DieFace[dieTypes.length];
+		final int[] values = new int[dieTypes.length];
+		for (int i = 0; i < diceGroupCount; ++i) {
+			for (int j = 0; j < faces.length; ++j) {
+				faces[j] = dieTypes[j].faces()[dists[j].sample(this.rng)];
+			}
+
+			final DiceGroupRollResult result =
+				diceGroupType.rollResult(faces, values, this.faceRoller);
+			aggregator.add(dieTypes, faces, result);
+			sink.accept(new DiceGroupRoll(faces, result, 0));
+		}
+	}
+
+	private FaceDistribution[] lookUpDistributions(
+		final DiceGroupType diceGroupType
+	) {
+		final DieType[] dieTypes = diceGroupType.dieTypes();
+		final FaceDistribution[] dists = new FaceDistribution[dieTypes.length];
+		for (int i = 0; i < dists.length; ++i) {
+			dists[i] = this.dieDistributions
+				.computeIfAbsent(dieTypes[i], this::distribution);
+		}
+
+		return dists;
+	}
+
+	private FaceDistribution distribution(final DieType dieType) {
+		final int nFace = dieType.faces().length;
+		final FaceDistribution dist = this.distributions.get(dieType.name());
+
+		return dist != null && dist.faceCount() == nFace
+			? dist
+			: FaceDistribution.uniform(nFace);
+	}
+}
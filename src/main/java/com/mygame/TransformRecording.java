@@ -0,0 +1,236 @@
+package com.mygame;
+
+import java.util.Arrays;
+
+import com.jme3.bullet.objects.PhysicsRigidBody;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+/* The physics locations and rotations of the dice of a roll,
+ * recorded frame by frame,
+ * so that the roll can be watched again without simulating it.
+ *
+ * Each die's transform is quantized to seven ints
+ * (location in units of 1 / LOCATION_SCALE,
+ * rotation components in units of 1 / ROTATION_SCALE)
+ * and stored as the zigzag varint-encoded difference
+ * from its quantized transform in the previous frame,
+ * which, for a die at rest, is one byte per int.
+ * Every KEYFRAME_INTERVAL-th frame is a keyframe,
+ * stored as the difference from zero,
+ * so that seeking only decodes from the closest keyframe before.
+ * Recording and seeking allocate nothing
+ * except when the byte buffer or frame tables grow. */
+final class TransformRecording {
+	static final float LOCATION_SCALE = 1024;
+	static final float ROTATION_SCALE = Short.MAX_VALUE;
+	static final int KEYFRAME_INTERVAL = 30;
+
+	/* Location x, y, z and rotation x, y, z, w. */
+	private static final int COMPONENT_COUNT = 7;
+
+	private final int dieCount;
+	/* Scratch space for reading transforms. */
+	private final Vector3f location;
+	private final Quaternion rotation;
+
+	private byte[] bytes;
+	private int byteCount;
+	/* Per frame: its time (simulated seconds since the roll). */
+	private float[] times;
+	private int frameCount;
+	/* Per keyframe: the offset of its data in this.bytes. */
+	private int[] keyframeOffsets;
+
+	/* The last quantized transform recorded, per die and component. */
+	private final int[] recordState;
+	/* The quantized transform of the frame seeked to,
+	 * and where the next frame's data starts in this.bytes. */
+	private final int[] seekState;
+	private int seekFrame;
+	private int seekOffset;
+
+	TransformRecording(final int dieCount) {
+		this.dieCount = dieCount;
+		this.location = new Vector3f();
+		this.rotation = new Quaternion();
+
+		final int initialFrameCapacity = 64;
+		this.bytes = new byte[
+			initialFrameCapacity * dieCount * COMPONENT_COUNT
+		];
+		this.times = new float[initialFrameCapacity];
+		this.keyframeOffsets =
+			new int[initialFrameCapacity / KEYFRAME_INTERVAL + 1];
+
+		this.recordState = new int[dieCount * COMPONENT_COUNT];
+		this.seekState = new int[dieCount * COMPONENT_COUNT];
+		this.seekFrame = -1;
+	}
+
+	int frameCount() {
+		return this.frameCount;
+	}
+
+	/* The time of the last frame, or 0 if there is none. */
+	float duration() {
+		return this.frameCount > 0 ? this.times[this.frameCount - 1] : 0;
+	}
+
+	/* Record the current transforms of the dice in dieBodies
+	 * as a frame at the given time,
+	 * which must not be before that of the previous frame. */
+	void record(final float time, final DieBodyRegistry dieBodies) {
+		final int frame = this.frameCount;
+		final boolean isKeyframe = frame % KEYFRAME_INTERVAL == 0;
+
+		if (frame == this.times.length) {
+			this.times = Arrays.copyOf(this.times, 2 * frame);
+		}
+		this.times[frame] = time;
+		if (isKeyframe) {
+			final int keyframe = frame / KEYFRAME_INTERVAL;
+			if (keyframe == this.keyframeOffsets.length) {
+				this.keyframeOffsets =
+					Arrays.copyOf(this.keyframeOffsets, 2 * keyframe);
+			}
+			this.keyframeOffsets[keyframe] = this.byteCount;
+		}
+
+		/* A varint of a 32-bit int takes at most 5 bytes. */
+		final int maxFrameSize = 5 * this.recordState.length;
+		if (this.byteCount + maxFrameSize > this.bytes.length) {
+			this.bytes = Arrays.copyOf(
+				this.bytes,
+				Math.max(2 * this.bytes.length, this.byteCount + maxFrameSize)
+			);
+		}
+
+		final int[] state = this.recordState;
+		for (int i = 0; i < this.dieCount; ++i) {
+			final PhysicsRigidBody dieBody = dieBodies.get(i);
+			dieBody.getPhysicsLocation(this.location);
+			dieBody.getPhysicsRotation(this.rotation);
+
+			final int at = i * COMPONENT_COUNT;
+			final float l = LOCATION_SCALE;
+			this.writeDelta(at, quantize(this.location.x, l), isKeyframe);
+			this.writeDelta(at + 1, quantize(this.location.y, l), isKeyframe);
+			this.writeDelta(at + 2, quantize(this.location.z, l), isKeyframe);
+
+			/* q and -q are the same rotation;
+			 * pick the one closer to the previous frame's,
+			 * so that the differences stay small. */
+			float x = this.rotation.getX(), y = this.rotation.getY();
+			float z = this.rotation.getZ(), w = this.rotation.getW();
+			final float prevDot = state[at + 3] * x
+				+ state[at + 4] * y
+				+ state[at + 5] * z
+				+ state[at + 6] * w;
+			if (prevDot < 0) {
+				x = -x;
+				y = -y;
+				z = -z;
+				w = -w;
+			}
+			final float r = ROTATION_SCALE;
+			this.writeDelta(at + 3, quantize(x, r), isKeyframe);
+			this.writeDelta(at + 4, quantize(y, r), isKeyframe);
+			this.writeDelta(at + 5, quantize(z, r), isKeyframe);
+			this.writeDelta(at + 6, quantize(w, r), isKeyframe);
+		}
+
+		++this.frameCount;
+	}
+
+	/* The last frame at or before the given time (0 if none is). */
+	int frameAt(final float time) {
+		final int i = Arrays.binarySearch(this.times, 0, this.frameCount, time);
+		final int frame = i >= 0 ? i : -i - 2;
+
+		return Math.max(frame, 0);
+	}
+
+	/* Decode the given frame,
+	 * whose transforms transform() then returns.
+	 * Seeking to the next frame decodes just that frame;
+	 * seeking anywhere else decodes from the keyframe before it. */
+	void seek(final int frame) {
+		if (frame < 0 || frame >= this.frameCount) {
+			throw new IndexOutOfBoundsException(frame);
+		}
+
+		if (
+			frame < this.seekFrame
+			|| frame / KEYFRAME_INTERVAL != this.seekFrame / KEYFRAME_INTERVAL
+		) {
+			final int keyframe = frame / KEYFRAME_INTERVAL;
+			this.seekOffset = this.keyframeOffsets[keyframe];
+			this.seekFrame = keyframe * KEYFRAME_INTERVAL - 1;
+			Arrays.fill(this.seekState, 0);
+		}
+
+		while (this.seekFrame < frame) {
+			for (int c = 0; c < this.seekState.length; ++c) {
+				/* Inlined varint reading, so as to advance this.seekOffset
+				 * without allocating. */
+				int zigzag = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = this.bytes[this.seekOffset++];
+					zigzag |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+
+				this.seekState[c] += (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+			++this.seekFrame;
+		}
+	}
+
+	/* Store the transform of die i in the frame seeked to. */
+	void transform(
+		final int i,
+		final Vector3f locationStore,
+		final Quaternion rotationStore
+	) {
+		final int at = i * COMPONENT_COUNT;
+		final int[] state = this.seekState;
+		locationStore.set(
+			state[at] / LOCATION_SCALE,
+			state[at + 1] / LOCATION_SCALE,
+			state[at + 2] / LOCATION_SCALE
+		);
+		rotationStore.set(
+			state[at + 3] / ROTATION_SCALE,
+			state[at + 4] / ROTATION_SCALE,
+			state[at + 5] / ROTATION_SCALE,
+			state[at + 6] / ROTATION_SCALE
+		);
+		rotationStore.normalizeLocal();
+	}
+
+	/* Append component c's difference from its last recorded value
+	 * (or from 0, in a keyframe). */
+	private void writeDelta(
+		final int c,
+		final int value,
+		final boolean isKeyframe
+	) {
+		final int delta = isKeyframe ? value : value - this.recordState[c];
+		this.recordState[c] = value;
+
+		int zigzag = (delta << 1) ^ (delta >> 31);
+		while ((zigzag & ~0x7F) != 0) {
+			this.bytes[this.byteCount++] = (byte)(zigzag & 0x7F | 0x80);
+			zigzag >>>= 7;
+		}
+		this.bytes[this.byteCount++] = (byte)zigzag;
+	}
+
+	private static int quantize(final float x, final float scale) {
+		return Math.round(x * scale);
+	}
+}
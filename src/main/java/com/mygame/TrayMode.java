@@ -0,0 +1,73 @@
+package com.mygame;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.jme3.math.Vector3f;
+
+/* How much of the world around the dice tray the window builds:
+ * FULL a GROUND_SIZE x GROUND_SIZE ground
+ * (and a physics world and shadows that cover it),
+ * COMPACT a ground just under the tray,
+ * with the physics world bounds and the shadows' reach fitted to the tray,
+ * so the broadphase and the shadow maps spend nothing
+ * on empty ground the dice never reach.
+ * (Dice that escape the tray are rolled back into it either way;
+ * see SettleDetector.)
+ * It can be chosen on the command line with
+ * --tray=NAME (e.g., --tray=compact),
+ * before any mode argument. */
+enum TrayMode {
+	FULL,
+	COMPACT;
+
+	static final String ARG_PREFIX = "--tray=";
+	static final TrayMode DEFAULT = FULL;
+
+	/* E.g., "compact". */
+	String displayName() {
+		return this.name().toLowerCase(Locale.ROOT);
+	}
+
+	/* The side of the (square) ground. */
+	float groundSize() {
+		return switch (this) {
+			case FULL -> Main.GROUND_SIZE;
+			/* Out to the outer faces of the walls. */
+			case COMPACT -> Main.DICE_TRAY_WIDTH + Main.DICE_TRAY_WALL_THICKNESS;
+		};
+	}
+
+	/* The corners of the physics world
+	 * (which only a quantized broadphase, such as AXIS_SWEEP_3, uses):
+	 * the ground, with room for a die around it,
+	 * from just below the ground to well above the walls. */
+	Vector3f worldMin() {
+		final float xzAbsMax = this.groundSize() / 2 + 1;
+		return new Vector3f(-xzAbsMax, -1, -xzAbsMax);
+	}
+
+	Vector3f worldMax() {
+		final float xzAbsMax = this.groundSize() / 2 + 1;
+		return new Vector3f(xzAbsMax, 4 * Main.DICE_TRAY_WALL_HEIGHT, xzAbsMax);
+	}
+
+	/* Parse "--tray=NAME". */
+	static TrayMode parse(final String arg) {
+		if (!arg.startsWith(ARG_PREFIX)) {
+			throw new IllegalArgumentException(
+				String.format("not a %sNAME argument: %s", ARG_PREFIX, arg)
+			);
+		}
+
+		final String name = arg.substring(ARG_PREFIX.length());
+		return Arrays.stream(values())
+			.filter(mode -> mode.displayName().equals(name))
+			.findFirst()
+			.orElseThrow(
+				() -> new IllegalArgumentException(
+					String.format("invalid tray mode: %s", name)
+				)
+			);
+	}
+}